@@ -2,6 +2,7 @@ plugins {
     id("java")
     `java-library`
     jacoco
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.kuan"
@@ -26,11 +27,17 @@ dependencies {
     implementation("jakarta.inject:jakarta.inject-api:2.0.1")
     testImplementation("org.junit.jupiter:junit-jupiter:5.8.2")
     testImplementation("org.mockito:mockito-core:4.7.0")
+    testAnnotationProcessor(project(":route-processor"))
+    jmhAnnotationProcessor(project(":route-processor"))
 
     implementation("org.slf4j:slf4j-api:2.0.0")
     implementation("org.slf4j:slf4j-simple:2.0.0")
 }
 
+jmh {
+    profilers.add("gc")
+}
+
 tasks.getByName<Test>("test") {
     useJUnitPlatform()
 }
@@ -0,0 +1,51 @@
+package com.kuan.rest;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比不同 MethodInvoker.Mode 调用资源方法的耗时与分配。
+ * <p>
+ * GENERATED 需要 route-processor 为 Resource 生成 invoker，见 build.gradle.kts 中的 jmhAnnotationProcessor。
+ * <p>
+ * ./gradlew :restful-service:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MethodInvokerBenchmark {
+
+    @Param({"REFLECTION", "METHOD_HANDLE", "GENERATED"})
+    public String mode;
+
+    private MethodInvoker.Invoker invoker;
+    private Resource resource;
+    private Object[] arguments;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        Method method = Resource.class.getMethod("get", String.class, int.class);
+        invoker = MethodInvoker.Mode.valueOf(mode).bind(method);
+        resource = new Resource();
+        arguments = new Object[]{"user", 42};
+    }
+
+    @Benchmark
+    public void invoke(Blackhole blackhole) throws Throwable {
+        blackhole.consume(invoker.invoke(resource, arguments));
+    }
+
+    @jakarta.ws.rs.Path("/users")
+    static class Resource {
+        @jakarta.ws.rs.GET
+        public String get(String name, int id) {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.kuan.rest;
+
+import com.tdd.di.Context;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.ext.Providers;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比 ResourceServlet.Dispatch 两种分发方式下，一批并发的阻塞请求全部完成所需的时间。
+ * <p>
+ * 资源方法阻塞 blocking 毫秒，Jetty 线程池只有 threads 个线程：BLOCKING 方式下同时只能处理线程池大小的请求，
+ * VIRTUAL 方式下请求数不受线程池限制。在 Java 17 上 VIRTUAL 使用平台线程，在 Java 21 上使用虚拟线程。
+ * <p>
+ * ./gradlew :restful-service:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ResourceServletDispatchBenchmark {
+
+    @Param({"BLOCKING", "VIRTUAL"})
+    public String dispatch;
+
+    @Param({"200"})
+    public int concurrency;
+
+    @Param({"50"})
+    public int blocking;
+
+    @Param({"16"})
+    public int threads;
+
+    private Server server;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup
+    public void setup() throws Exception {
+        server = new Server(new QueuedThreadPool(threads, threads));
+        ServerConnector connector = new ServerConnector(server);
+        server.addConnector(connector);
+
+        ServletContextHandler handler = new ServletContextHandler(server, "/");
+        ServletHolder holder = new ServletHolder(new ResourceServlet(new BlockingRuntime(blocking),
+                ResourceServlet.Dispatch.valueOf(dispatch).executor()));
+        holder.setAsyncSupported(true);
+        handler.addServlet(holder, "/");
+        server.setHandler(handler);
+        server.start();
+
+        client = HttpClient.newHttpClient();
+        request = HttpRequest.newBuilder(new URI("http://localhost:" + connector.getLocalPort() + "/")).GET().build();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Benchmark
+    public void concurrentBlockingRequests() {
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        }
+        CompletableFuture.allOf(responses).join();
+    }
+
+    // 资源方法模拟一次阻塞 I/O，然后返回 204
+    record BlockingRuntime(int blocking) implements Runtime {
+        @Override
+        public Providers getProviders() {
+            return null;
+        }
+
+        @Override
+        public ResourceContext createResourceContext(HttpServletRequest request, HttpServletResponse response) {
+            return null;
+        }
+
+        @Override
+        public UriInfoBuilder createUriInfoBuilder(HttpServletRequest request) {
+            return null;
+        }
+
+        @Override
+        public Context getApplicationContext() {
+            return null;
+        }
+
+        @Override
+        public ResourceRouter getResourceRouter() {
+            return (request, resourceContext) -> {
+                try {
+                    Thread.sleep(blocking);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Responses.NO_CONTENT;
+            };
+        }
+    }
+}
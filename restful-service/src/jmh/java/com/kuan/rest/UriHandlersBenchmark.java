@@ -0,0 +1,59 @@
+package com.kuan.rest;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比不同 UriHandlers.Mode 下匹配根资源的耗时与每次匹配分配的字节数（gc.alloc.rate.norm）。
+ * <p>
+ * ./gradlew :restful-service:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UriHandlersBenchmark {
+
+    @Param({"LINEAR", "TRIE", "COMBINED"})
+    public String mode;
+
+    @Param({"2", "200"})
+    public int routes;
+
+    private UriHandlers.Matcher<Handler> matcher;
+    private String path;
+
+    @Setup
+    public void setup() {
+        List<Handler> handlers = new ArrayList<>();
+        for (int i = 0; i < routes / 2; i++) {
+            handlers.add(new Handler(new PathUriTemplate("/resources" + i)));
+            handlers.add(new Handler(new PathUriTemplate("/resources" + i + "/{id}/items/{item:[0-9]+}")));
+        }
+        matcher = UriHandlers.Mode.valueOf(mode).compile(handlers);
+        path = "/resources" + (routes / 2 - 1) + "/1234/items/42/details";
+    }
+
+    @Benchmark
+    public void match(Blackhole blackhole) {
+        blackhole.consume(matcher.matched(path, r -> true).get().matched().get().getRemaining());
+    }
+
+    @Benchmark
+    public void miss(Blackhole blackhole) {
+        blackhole.consume(matcher.matched("/customers/1", r -> true));
+    }
+
+    record Handler(UriTemplate uriTemplate) implements UriHandler {
+        @Override
+        public UriTemplate getUriTemplate() {
+            return uriTemplate;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.kuan.rest;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.ext.ContextResolver;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Providers;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * 在 Providers 前面缓存 MessageBodyWriter、MessageBodyReader 和 ContextResolver 的查找结果。
+ * <p>
+ * 真正的 Providers 每次查找都要遍历所有注册的 provider 并调用 isWriteable / isReadable；
+ * 这里按 (rawType, genericType, mediaType) 缓存，ContextResolver 按 (contextType, mediaType) 缓存，没有找到也会被缓存。
+ * 注解不参与缓存的键：同一个类型和媒体类型的实体，provider 的选择不应该依赖资源方法上的注解。
+ * 容量满了之后和 RouteCache 一样按 CLOCK 淘汰；注册了新的 provider 之后需要调用 {@link #invalidate()}，
+ * ResourceServlet 通过 {@link Runtime#addProvidersListener(Runnable)} 收到通知时调用它。
+ */
+class CachingProviders implements Providers {
+    static final int MAXIMUM_SIZE = Integer.getInteger("kuan.rest.provider-cache-size", 512);
+
+    private final Providers providers;
+    private final int maximumSize;
+    private volatile Cache cache;
+
+    CachingProviders(Providers providers) {
+        this(providers, MAXIMUM_SIZE);
+    }
+
+    CachingProviders(Providers providers, int maximumSize) {
+        this.providers = providers;
+        this.maximumSize = maximumSize;
+        this.cache = new Cache(maximumSize);
+    }
+
+    static Providers of(Providers providers) {
+        return providers == null || providers instanceof CachingProviders ? providers : new CachingProviders(providers);
+    }
+
+    // 正在进行的查找会把结果放进旧的缓存里，不会影响之后的查找
+    void invalidate() {
+        cache = new Cache(maximumSize);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> MessageBodyReader<T> getMessageBodyReader(Class<T> type, Type genericType, Annotation[] annotations,
+                                                         MediaType mediaType) {
+        return (MessageBodyReader<T>) cache.get(new Key(MessageBodyReader.class, type, genericType, mediaType),
+                () -> providers.getMessageBodyReader(type, genericType, annotations, mediaType));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> MessageBodyWriter<T> getMessageBodyWriter(Class<T> type, Type genericType, Annotation[] annotations,
+                                                         MediaType mediaType) {
+        return (MessageBodyWriter<T>) cache.get(new Key(MessageBodyWriter.class, type, genericType, mediaType),
+                () -> providers.getMessageBodyWriter(type, genericType, annotations, mediaType));
+    }
+
+    @Override
+    public <T extends Throwable> ExceptionMapper<T> getExceptionMapper(Class<T> type) {
+        return providers.getExceptionMapper(type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> ContextResolver<T> getContextResolver(Class<T> contextType, MediaType mediaType) {
+        return (ContextResolver<T>) cache.get(new Key(ContextResolver.class, contextType, contextType, mediaType),
+                () -> providers.getContextResolver(contextType, mediaType));
+    }
+
+    private record Key(Class<?> provider, Class<?> type, Type genericType, MediaType mediaType) {
+    }
+
+    private static class Cache {
+        private final int maximumSize;
+        private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+        private final Queue<Key> clock = new ConcurrentLinkedQueue<>();
+
+        Cache(int maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        Object get(Key key, Supplier<Object> lookup) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                entry.referenced = true;
+                return entry.provider.orElse(null);
+            }
+            Object provider = lookup.get();
+            if (maximumSize > 0 && entries.putIfAbsent(key, new Entry(Optional.ofNullable(provider))) == null) {
+                clock.offer(key);
+                while (entries.size() > maximumSize) {
+                    evict();
+                }
+            }
+            return provider;
+        }
+
+        private void evict() {
+            Key key = clock.poll();
+            if (key == null) {
+                return;
+            }
+            Entry entry = entries.get(key);
+            if (entry != null && entry.referenced) {
+                entry.referenced = false;
+                clock.offer(key);
+                return;
+            }
+            entries.remove(key);
+        }
+    }
+
+    private static class Entry {
+        private final Optional<Object> provider;
+        private volatile boolean referenced;
+
+        private Entry(Optional<Object> provider) {
+            this.provider = provider;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.kuan.rest;
+
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.CompletionCallback;
+import jakarta.ws.rs.container.ConnectionCallback;
+import jakarta.ws.rs.container.TimeoutHandler;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * 异步资源方法的挂起状态：@Suspended AsyncResponse 参数就是它，返回 CompletionStage 的资源方法也会被包装成它。
+ * <p>
+ * 恢复的结果可以是 Response、实体或者异常；超时没有 TimeoutHandler 时以 503 恢复，cancel 同样以 503 恢复。
+ * 超时或者取消先于 CompletionStage 完成时，会取消资源方法返回的 CompletableFuture。
+ * 超时由一个共享的守护线程计时，不占用容器线程。
+ * 返回 CompletionStage 的资源方法拿不到 AsyncResponse 设置超时，默认 kuan.rest.async-timeout 毫秒后超时，0 表示不超时。
+ */
+class DefaultAsyncResponse implements AsyncResponse {
+    static final long ASYNC_TIMEOUT = Long.getLong("kuan.rest.async-timeout", 30_000);
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "async-response-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final CompletableFuture<Object> result = new CompletableFuture<>();
+    private final List<CompletionCallback> completionCallbacks = new CopyOnWriteArrayList<>();
+    private final List<ConnectionCallback> connectionCallbacks = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled;
+    private volatile TimeoutHandler timeoutHandler;
+    private ScheduledFuture<?> timeout;
+
+    // CompletionStage 的结果经过 entity 转换后恢复
+    static DefaultAsyncResponse of(CompletionStage<?> stage, Function<Object, Object> entity) {
+        return of(stage, entity, ASYNC_TIMEOUT);
+    }
+
+    static DefaultAsyncResponse of(CompletionStage<?> stage, Function<Object, Object> entity, long timeoutMillis) {
+        DefaultAsyncResponse asyncResponse = new DefaultAsyncResponse();
+        stage.whenComplete((value, error) -> {
+            if (error != null) {
+                asyncResponse.resume(unwrap(error));
+            } else {
+                asyncResponse.resume(entity.apply(value));
+            }
+        });
+        asyncResponse.result.whenComplete((value, error) -> {
+            try {
+                stage.toCompletableFuture().cancel(false);
+            } catch (UnsupportedOperationException ignored) {
+            }
+        });
+        // 已经完成的 CompletionStage 不再计时
+        if (timeoutMillis > 0) {
+            asyncResponse.setTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return asyncResponse;
+    }
+
+    static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    CompletionStage<Object> stage() {
+        return result;
+    }
+
+    // 响应已经写出（或者写出失败）
+    void completed(Throwable throwable) {
+        for (CompletionCallback callback : completionCallbacks) {
+            callback.onComplete(throwable);
+        }
+    }
+
+    // 客户端断开连接
+    void disconnected() {
+        for (ConnectionCallback callback : connectionCallbacks) {
+            callback.onDisconnect(this);
+        }
+        cancel();
+    }
+
+    @Override
+    public boolean resume(Object response) {
+        cancelTimeout();
+        return result.complete(response);
+    }
+
+    @Override
+    public boolean resume(Throwable response) {
+        cancelTimeout();
+        return result.completeExceptionally(response);
+    }
+
+    @Override
+    public boolean cancel() {
+        return cancel(Responses.SERVICE_UNAVAILABLE);
+    }
+
+    @Override
+    public boolean cancel(int retryAfter) {
+        return cancel(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfter).build());
+    }
+
+    @Override
+    public boolean cancel(Date retryAfter) {
+        return cancel(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfter).build());
+    }
+
+    private boolean cancel(Response response) {
+        cancelTimeout();
+        if (result.complete(response)) {
+            cancelled = true;
+            return true;
+        }
+        return cancelled;
+    }
+
+    // 只在锁里取消计时：完成 result 时会同步执行 stage() 上注册的动作（比如写出响应），不能放在锁里
+    private synchronized void cancelTimeout() {
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return !result.isDone();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    @Override
+    public synchronized boolean setTimeout(long time, TimeUnit unit) {
+        if (result.isDone()) {
+            return false;
+        }
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+        timeout = timer.schedule(this::timeout, time, unit);
+        return true;
+    }
+
+    private void timeout() {
+        if (result.isDone()) {
+            return;
+        }
+        TimeoutHandler handler = timeoutHandler;
+        if (handler != null) {
+            handler.handleTimeout(this);
+        } else {
+            resume(new StacklessWebApplicationException(Responses.SERVICE_UNAVAILABLE));
+        }
+    }
+
+    @Override
+    public void setTimeoutHandler(TimeoutHandler handler) {
+        this.timeoutHandler = handler;
+    }
+
+    @Override
+    public Collection<Class<?>> register(Class<?> callback) {
+        return register(instantiate(callback));
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+        Map<Class<?>, Collection<Class<?>>> registered = new HashMap<>();
+        registered.put(callback, register(callback));
+        for (Class<?> other : callbacks) {
+            registered.put(other, register(other));
+        }
+        return registered;
+    }
+
+    @Override
+    public Collection<Class<?>> register(Object callback) {
+        List<Class<?>> registered = new ArrayList<>();
+        if (callback instanceof CompletionCallback completion) {
+            completionCallbacks.add(completion);
+            registered.add(CompletionCallback.class);
+        }
+        if (callback instanceof ConnectionCallback connection) {
+            connectionCallbacks.add(connection);
+            registered.add(ConnectionCallback.class);
+        }
+        return registered;
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+        Map<Class<?>, Collection<Class<?>>> registered = new HashMap<>();
+        registered.put(callback.getClass(), register(callback));
+        for (Object other : callbacks) {
+            registered.put(other.getClass(), register(other));
+        }
+        return registered;
+    }
+
+    private static Object instantiate(Class<?> callback) {
+        try {
+            return callback.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.kuan.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.PathSegment;
+import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.core.UriInfo;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个请求只有一个 UriInfo：匹配到新的资源或者路径参数之前，createUriInfo 总是返回同一个实例。
+ * <p>
+ * 请求 URI、解码后的路径、路径分段和查询参数只和请求有关，第一次用到时才计算，之后在这个请求的所有 UriInfo 之间共享。
+ */
+class DefaultUriInfoBuilder implements UriInfoBuilder {
+    private final String scheme;
+    private final String host;
+    private final int port;
+    private final String contextPath;
+    private final String rawPath;
+    private final String rawQuery;
+
+    private final List<Object> matchedResources = new ArrayList<>();
+    private final MultivaluedMap<String, String> pathParameters = new MultivaluedHashMap<>();
+    // 还没有取出路径参数的匹配结果，资源方法不需要 UriInfo 时不会创建路径参数
+    private final List<UriTemplate.MatchResult> pendingResults = new ArrayList<>();
+    private UriInfo uriInfo;
+
+    private URI baseUri;
+    private URI absolutePath;
+    private URI requestUri;
+    private String path;
+    private List<PathSegment> rawPathSegments;
+    private List<PathSegment> pathSegments;
+    private MultivaluedMap<String, String> rawQueryParameters;
+    private MultivaluedMap<String, String> queryParameters;
+
+    DefaultUriInfoBuilder(HttpServletRequest request) {
+        this(request.getScheme(), request.getServerName(), request.getServerPort(), request.getContextPath(),
+                request.getRequestURI().substring(request.getContextPath().length()), request.getQueryString());
+    }
+
+    // rawPath 是 contextPath 之后、还没有解码的路径，rawQuery 同样没有解码，没有查询字符串时为 null
+    DefaultUriInfoBuilder(String scheme, String host, int port, String contextPath, String rawPath,
+                          String rawQuery) {
+        this.scheme = scheme;
+        this.host = host;
+        this.port = port;
+        this.contextPath = contextPath;
+        this.rawPath = rawPath.startsWith("/") ? rawPath.substring(1) : rawPath;
+        this.rawQuery = rawQuery;
+    }
+
+    @Override
+    public Object getLastMatchedResource() {
+        return matchedResources.get(matchedResources.size() - 1);
+    }
+
+    @Override
+    public void addMatchedResource(Object resource) {
+        matchedResources.add(resource);
+        uriInfo = null;
+    }
+
+    @Override
+    public void addMatchedPathParameters(UriTemplate.MatchResult result) {
+        pendingResults.add(result);
+    }
+
+    @Override
+    public void addMatchedPathParameters(Map<String, String> pathParameters) {
+        flushPendingResults();
+        if (pathParameters.isEmpty()) {
+            return;
+        }
+        pathParameters.forEach(this.pathParameters::add);
+        uriInfo = null;
+    }
+
+    private void flushPendingResults() {
+        if (pendingResults.isEmpty()) {
+            return;
+        }
+        List<UriTemplate.MatchResult> results = List.copyOf(pendingResults);
+        pendingResults.clear();
+        results.forEach(result -> addMatchedPathParameters(result.getMatchedPathParameters()));
+    }
+
+    @Override
+    public UriInfo createUriInfo() {
+        flushPendingResults();
+        if (uriInfo == null) {
+            uriInfo = new DefaultUriInfo(List.copyOf(matchedResources), copy(pathParameters));
+        }
+        return uriInfo;
+    }
+
+    private static MultivaluedMap<String, String> copy(MultivaluedMap<String, String> parameters) {
+        MultivaluedHashMap<String, String> copy = new MultivaluedHashMap<>();
+        parameters.forEach((name, values) -> copy.put(name, List.copyOf(values)));
+        return copy;
+    }
+
+    private URI baseUri() {
+        if (baseUri == null) {
+            baseUri = URI.create(origin() + contextPath + "/");
+        }
+        return baseUri;
+    }
+
+    private URI absolutePath() {
+        if (absolutePath == null) {
+            absolutePath = URI.create(origin() + contextPath + "/" + rawPath);
+        }
+        return absolutePath;
+    }
+
+    private URI requestUri() {
+        if (requestUri == null) {
+            requestUri = rawQuery == null ? absolutePath() : URI.create(absolutePath() + "?" + rawQuery);
+        }
+        return requestUri;
+    }
+
+    private String origin() {
+        boolean defaultPort = port <= 0 || (scheme.equals("http") && port == 80)
+                || (scheme.equals("https") && port == 443);
+        return scheme + "://" + host + (defaultPort ? "" : ":" + port);
+    }
+
+    private String path() {
+        if (path == null) {
+            path = decodePath(rawPath);
+        }
+        return path;
+    }
+
+    private List<PathSegment> pathSegments(boolean decode) {
+        if (decode) {
+            if (pathSegments == null) {
+                pathSegments = segments(true);
+            }
+            return pathSegments;
+        }
+        if (rawPathSegments == null) {
+            rawPathSegments = segments(false);
+        }
+        return rawPathSegments;
+    }
+
+    private List<PathSegment> segments(boolean decode) {
+        List<PathSegment> segments = new ArrayList<>();
+        for (String segment : rawPath.split("/", -1)) {
+            String[] parts = segment.split(";", -1);
+            MultivaluedHashMap<String, String> matrix = new MultivaluedHashMap<>();
+            for (int i = 1; i < parts.length; i++) {
+                if (parts[i].isEmpty()) {
+                    continue;
+                }
+                int equals = parts[i].indexOf('=');
+                String name = equals < 0 ? parts[i] : parts[i].substring(0, equals);
+                String value = equals < 0 ? "" : parts[i].substring(equals + 1);
+                matrix.add(decode ? decodePath(name) : name, decode ? decodePath(value) : value);
+            }
+            segments.add(new Segment(decode ? decodePath(parts[0]) : parts[0], matrix));
+        }
+        return Collections.unmodifiableList(segments);
+    }
+
+    private MultivaluedMap<String, String> queryParameters(boolean decode) {
+        if (decode) {
+            if (queryParameters == null) {
+                queryParameters = query(true);
+            }
+            return queryParameters;
+        }
+        if (rawQueryParameters == null) {
+            rawQueryParameters = query(false);
+        }
+        return rawQueryParameters;
+    }
+
+    private MultivaluedMap<String, String> query(boolean decode) {
+        return new QueryParameters(rawQuery, decode);
+    }
+
+    // 路径里的 + 就是 + 本身，只有查询字符串里的 + 表示空格
+    private static String decodePath(String value) {
+        return value.indexOf('%') < 0 ? value : URLDecoder.decode(value.replace("+", "%2B"), StandardCharsets.UTF_8);
+    }
+
+    private record Segment(String path, MultivaluedMap<String, String> matrixParameters) implements PathSegment {
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getMatrixParameters() {
+            return matrixParameters;
+        }
+    }
+
+    // 匹配到的资源和路径参数是创建时的快照，其他内容都转给 DefaultUriInfoBuilder 按需计算
+    private class DefaultUriInfo implements UriInfo {
+        private final List<Object> matchedResources;
+        private final MultivaluedMap<String, String> pathParameters;
+
+        private DefaultUriInfo(List<Object> matchedResources, MultivaluedMap<String, String> pathParameters) {
+            this.matchedResources = matchedResources;
+            this.pathParameters = pathParameters;
+        }
+
+        @Override
+        public String getPath() {
+            return getPath(true);
+        }
+
+        @Override
+        public String getPath(boolean decode) {
+            return decode ? path() : rawPath;
+        }
+
+        @Override
+        public List<PathSegment> getPathSegments() {
+            return getPathSegments(true);
+        }
+
+        @Override
+        public List<PathSegment> getPathSegments(boolean decode) {
+            return pathSegments(decode);
+        }
+
+        @Override
+        public URI getRequestUri() {
+            return requestUri();
+        }
+
+        @Override
+        public UriBuilder getRequestUriBuilder() {
+            return UriBuilder.fromUri(requestUri());
+        }
+
+        @Override
+        public URI getAbsolutePath() {
+            return absolutePath();
+        }
+
+        @Override
+        public UriBuilder getAbsolutePathBuilder() {
+            return UriBuilder.fromUri(absolutePath());
+        }
+
+        @Override
+        public URI getBaseUri() {
+            return baseUri();
+        }
+
+        @Override
+        public UriBuilder getBaseUriBuilder() {
+            return UriBuilder.fromUri(baseUri());
+        }
+
+        // 路径参数是按 servlet path 匹配得到的，已经由容器解码
+        @Override
+        public MultivaluedMap<String, String> getPathParameters() {
+            return pathParameters;
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getPathParameters(boolean decode) {
+            return pathParameters;
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getQueryParameters() {
+            return getQueryParameters(true);
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getQueryParameters(boolean decode) {
+            return queryParameters(decode);
+        }
+
+        // UriInfoBuilder 不记录匹配到的 URI
+        @Override
+        public List<String> getMatchedURIs() {
+            return List.of();
+        }
+
+        @Override
+        public List<String> getMatchedURIs(boolean decode) {
+            return List.of();
+        }
+
+        // 当前资源在前
+        @Override
+        public List<Object> getMatchedResources() {
+            List<Object> resources = new ArrayList<>(matchedResources);
+            Collections.reverse(resources);
+            return resources;
+        }
+
+        @Override
+        public URI resolve(URI uri) {
+            return baseUri().resolve(uri);
+        }
+
+        @Override
+        public URI relativize(URI uri) {
+            return requestUri().relativize(uri.isAbsolute() ? uri : resolve(uri));
+        }
+    }
+}
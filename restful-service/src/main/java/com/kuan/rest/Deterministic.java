@@ -0,0 +1,15 @@
+package com.kuan.rest;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注在子资源定位器上：对同一个请求路径，定位器总是返回同一个类的子资源，
+ * 经过它的路由可以被 RouteCache 缓存，命中时只重新调用定位器，不再重新匹配。
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Deterministic {
+}
@@ -0,0 +1,92 @@
+package com.kuan.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 序列化响应实体用的输出流：数据写在固定大小的块里，块来自一个全局的池，写出之后 release 归还。
+ * <p>
+ * 块不需要连续，扩容时不复制已经写入的数据；WriteListener 每次写出一整块。EntityPipe 也从同一个池里分配块。
+ * 池里最多保留 POOLED_CHUNKS 块，池空时新分配，池满时归还的块直接丢弃。
+ */
+final class EntityBuffer extends OutputStream {
+    static final int CHUNK_SIZE = 16 * 1024;
+    private static final int POOLED_CHUNKS = 256;
+    private static final ArrayBlockingQueue<byte[]> pool = new ArrayBlockingQueue<>(POOLED_CHUNKS);
+
+    private final List<byte[]> chunks = new ArrayList<>();
+    // 最后一块里已经写入的字节数
+    private int position = CHUNK_SIZE;
+    private long size;
+
+    @Override
+    public void write(int b) {
+        if (position == CHUNK_SIZE) {
+            next();
+        }
+        chunks.get(chunks.size() - 1)[position++] = (byte) b;
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            if (position == CHUNK_SIZE) {
+                next();
+            }
+            int count = Math.min(len, CHUNK_SIZE - position);
+            System.arraycopy(b, off, chunks.get(chunks.size() - 1), position, count);
+            position += count;
+            off += count;
+            len -= count;
+            size += count;
+        }
+    }
+
+    private void next() {
+        chunks.add(allocate());
+        position = 0;
+    }
+
+    static byte[] allocate() {
+        byte[] chunk = pool.poll();
+        return chunk != null ? chunk : new byte[CHUNK_SIZE];
+    }
+
+    static void recycle(byte[] chunk) {
+        pool.offer(chunk);
+    }
+
+    long size() {
+        return size;
+    }
+
+    int chunks() {
+        return chunks.size();
+    }
+
+    void writeChunk(int index, OutputStream output) throws IOException {
+        output.write(chunks.get(index), 0, index == chunks.size() - 1 ? position : CHUNK_SIZE);
+    }
+
+    void writeTo(OutputStream output) throws IOException {
+        for (int i = 0; i < chunks.size(); i++) {
+            writeChunk(i, output);
+        }
+    }
+
+    // 归还之后不能再使用
+    void release() {
+        for (byte[] chunk : chunks) {
+            if (!pool.offer(chunk)) {
+                break;
+            }
+        }
+        chunks.clear();
+        position = CHUNK_SIZE;
+        size = 0;
+    }
+}
@@ -0,0 +1,167 @@
+package com.kuan.rest;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * 超过 ASYNC_WRITE_THRESHOLD 的响应实体的剩余部分：MessageBodyWriter 在分发线程或者 EntityWriters 的线程上写入，WriteListener 在容器线程上写出。
+ * <p>
+ * 中间最多排队 capacity 块，队列满了写入的一方就等待，堆上不会缓存整个实体。
+ * 输出流就绪而队列为空时容器不会再调用 onWritePossible，这时改由写入的一方直接写出，直到输出流不再就绪。
+ * 写入的一方不能是容器线程：容器在 service 返回之前不会调用 WriteListener，在容器线程上等待会死锁。
+ */
+final class EntityPipe extends OutputStream implements WriteListener {
+    private final AsyncContext context;
+    private final ServletOutputStream output;
+    private final int capacity;
+    private final Queue<Chunk> queue = new ArrayDeque<>();
+
+    // 正在写入的块，只由写入的一方访问
+    private byte[] chunk;
+    private int position;
+
+    // 以下状态由 this 保护
+    // 输出流就绪但是没有数据可写，容器不会再调用 onWritePossible
+    private boolean idle;
+    private boolean closed;
+    private boolean completed;
+    private Throwable failure;
+
+    EntityPipe(AsyncContext context, ServletOutputStream output, int capacity) {
+        this.context = context;
+        this.output = output;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (chunk == null) {
+            next();
+        }
+        chunk[position++] = (byte) b;
+        if (position == EntityBuffer.CHUNK_SIZE) {
+            enqueue();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (chunk == null) {
+                next();
+            }
+            int count = Math.min(len, EntityBuffer.CHUNK_SIZE - position);
+            System.arraycopy(b, off, chunk, position, count);
+            position += count;
+            off += count;
+            len -= count;
+            if (position == EntityBuffer.CHUNK_SIZE) {
+                enqueue();
+            }
+        }
+    }
+
+    private void next() {
+        chunk = EntityBuffer.allocate();
+        position = 0;
+    }
+
+    private synchronized void enqueue() throws IOException {
+        try {
+            while (queue.size() >= capacity && failure == null) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+        queue.add(new Chunk(chunk, position));
+        chunk = null;
+        if (idle) {
+            drain();
+        }
+    }
+
+    // 写完最后一块之后结束 AsyncContext
+    @Override
+    public void close() throws IOException {
+        if (chunk != null) {
+            enqueue();
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (idle) {
+                drain();
+            }
+        }
+    }
+
+    // MessageBodyWriter 写到一半失败：丢弃还没写出的数据，结束 AsyncContext
+    synchronized void abort(Throwable throwable) {
+        if (failure == null) {
+            failure = throwable;
+        }
+        release();
+        complete();
+    }
+
+    @Override
+    public synchronized void onWritePossible() throws IOException {
+        idle = false;
+        drain();
+    }
+
+    @Override
+    public synchronized void onError(Throwable throwable) {
+        abort(throwable);
+    }
+
+    private void drain() throws IOException {
+        while (failure == null && output.isReady()) {
+            Chunk next = queue.poll();
+            if (next == null) {
+                if (closed) {
+                    complete();
+                } else {
+                    idle = true;
+                }
+                return;
+            }
+            notifyAll();
+            output.write(next.bytes(), 0, next.length());
+            EntityBuffer.recycle(next.bytes());
+        }
+        idle = false;
+    }
+
+    private void release() {
+        for (Chunk next : queue) {
+            EntityBuffer.recycle(next.bytes());
+        }
+        queue.clear();
+        notifyAll();
+    }
+
+    private void complete() {
+        if (!completed) {
+            completed = true;
+            context.complete();
+        }
+    }
+
+    private record Chunk(byte[] bytes, int length) {
+    }
+}
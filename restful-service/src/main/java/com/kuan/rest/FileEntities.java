@@ -0,0 +1,95 @@
+package com.kuan.rest;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文件类的响应实体：Path、File、FileChannel 和 MappedByteBuffer。
+ * <p>
+ * 这些实体不经过 MessageBodyWriter：长度和最后修改时间直接从文件系统得到，内容以 FileChannel 交给 Jetty 发送。
+ * 不为每个响应映射文件：MappedByteBuffer 没法主动解除映射，映射会一直留到 GC，还可能因为文件被改写而读取失败；
+ * 实体本身就是 MappedByteBuffer 时才直接发送它。
+ * FileChannel 实体从它当前的位置发送到末尾，发送完成之后由 ResourceServlet 关闭。
+ */
+final class FileEntities {
+    private FileEntities() {
+    }
+
+    static boolean isFile(Object entity) {
+        return entity instanceof Path || entity instanceof File || entity instanceof FileChannel
+                || entity instanceof MappedByteBuffer;
+    }
+
+    static long length(Object entity) throws IOException {
+        if (entity instanceof MappedByteBuffer buffer) {
+            return buffer.remaining();
+        }
+        if (entity instanceof FileChannel channel) {
+            return channel.size() - channel.position();
+        }
+        return Files.size(path(entity));
+    }
+
+    // 只有 Path 和 File 有最后修改时间，其他实体返回 -1
+    static long lastModified(Object entity) throws IOException {
+        if (entity instanceof Path || entity instanceof File) {
+            return Files.getLastModifiedTime(path(entity)).toMillis();
+        }
+        return -1;
+    }
+
+    // 实体是 MappedByteBuffer 时返回它剩余部分的视图，否则返回 null
+    static ByteBuffer mapped(Object entity) {
+        return entity instanceof MappedByteBuffer buffer ? buffer.slice() : null;
+    }
+
+    static FileChannel open(Object entity) throws IOException {
+        if (entity instanceof FileChannel channel) {
+            return channel;
+        }
+        return FileChannel.open(path(entity), StandardOpenOption.READ);
+    }
+
+    // 不是 Jetty 的输出流时复制；一次 transferTo 可能只传输一部分（超过 2GB 时一定如此），要循环到末尾
+    static void copy(Object entity, OutputStream output) throws IOException {
+        WritableByteChannel target = Channels.newChannel(output);
+        ByteBuffer buffer = mapped(entity);
+        if (buffer != null) {
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            return;
+        }
+        try (FileChannel channel = open(entity)) {
+            long position = channel.position();
+            long size = channel.size();
+            while (position < size) {
+                long transferred = channel.transferTo(position, size - position, target);
+                if (transferred <= 0) {
+                    throw new EOFException("file truncated at " + position + " of " + size + " bytes");
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    static void close(Object entity) throws IOException {
+        if (entity instanceof FileChannel channel) {
+            channel.close();
+        }
+    }
+
+    private static Path path(Object entity) {
+        return entity instanceof File file ? file.toPath() : (Path) entity;
+    }
+}
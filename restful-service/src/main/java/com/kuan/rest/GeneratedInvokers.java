@@ -0,0 +1,18 @@
+package com.kuan.rest;
+
+/**
+ * route-processor 为每个资源类生成的 invoker（和资源类同一个包，类名是资源类的 binary name 加上 $$Invokers），
+ * 直接调用资源方法和子资源定位器，不经过反射和 MethodHandle。
+ * <p>
+ * 方法签名的格式是 方法名(参数类型,...)，参数类型和路由表一样使用 binary name。
+ */
+public interface GeneratedInvokers {
+    String SUFFIX = "$$Invokers";
+
+    // 不是这个资源类声明的方法时返回 null
+    Invoker invoker(String signature);
+
+    interface Invoker {
+        Object invoke(Object resource, Object[] arguments) throws Throwable;
+    }
+}
@@ -0,0 +1,53 @@
+package com.kuan.rest;
+
+import jakarta.ws.rs.ext.RuntimeDelegate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 把响应头的值转换成字符串。
+ * <p>
+ * String 直接使用；byte[] 每次写出时按 ISO-8859-1 解码成字符串，只是省去了 HeaderDelegate，并不是预先编码的值；
+ * 只编码一次、之后每个响应直接复用的响应头应该用 Jetty 的 HttpField（比如 PreEncodedHttpField），见 ResourceServlet.headers。
+ * 其他类型使用 RuntimeDelegate 创建的 HeaderDelegate。
+ * HeaderDelegate 按类型缓存，每个类型只创建一次；RuntimeDelegate 被替换之后缓存随之作废。
+ */
+final class HeaderDelegates {
+    private static volatile Delegates delegates = new Delegates(null);
+
+    private HeaderDelegates() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static String toString(Object value) {
+        if (value instanceof String string) {
+            return string;
+        }
+        if (value instanceof byte[] bytes) {
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+        RuntimeDelegate.HeaderDelegate<Object> delegate = (RuntimeDelegate.HeaderDelegate<Object>) delegate(value.getClass());
+        return delegate.toString(value);
+    }
+
+    static RuntimeDelegate.HeaderDelegate<?> delegate(Class<?> type) {
+        RuntimeDelegate runtimeDelegate = RuntimeDelegate.getInstance();
+        Delegates current = delegates;
+        if (current.runtimeDelegate != runtimeDelegate) {
+            current = new Delegates(runtimeDelegate);
+            delegates = current;
+        }
+        return current.delegates.computeIfAbsent(type, runtimeDelegate::createHeaderDelegate);
+    }
+
+    private static final class Delegates {
+        private final RuntimeDelegate runtimeDelegate;
+        private final Map<Class<?>, RuntimeDelegate.HeaderDelegate<?>> delegates = new ConcurrentHashMap<>();
+
+        private Delegates(RuntimeDelegate runtimeDelegate) {
+            this.runtimeDelegate = runtimeDelegate;
+        }
+    }
+}
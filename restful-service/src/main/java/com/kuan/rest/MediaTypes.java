@@ -0,0 +1,273 @@
+package com.kuan.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.HttpHeaders;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 一次请求中参与内容协商的媒体类型：按具体程度和 q 值排好序的 Accept，以及请求体的 Content-Type。
+ * <p>
+ * 客户端实际发送的 Accept 写法只有寥寥几种，解析结果按原始请求头缓存，容量满了之后和 RouteCache 一样按 CLOCK 淘汰；
+ * 同一个请求在各级资源上做协商时也只解析这一次。
+ * Content-Type 只保留 type/subtype：multipart 的 boundary 之类的参数每个请求都不一样，既不缓存，也不参与相等比较，
+ * 否则 RouteCache 的每个键都会不同。
+ */
+final class MediaTypes {
+    static final int MAX_CACHED_HEADERS = Integer.getInteger("kuan.rest.media-type-cache-size", 128);
+    private static final HeaderCache parsed = new HeaderCache(MAX_CACHED_HEADERS);
+    private static final MediaRange[] WILDCARD = {new MediaRange("*", "*", 1000)};
+
+    static final MediaTypes ANY = new MediaTypes(null, null);
+
+    private final String accept;
+    private final MediaRange[] acceptable;
+    private final MediaRange consumed;
+
+    private MediaTypes(String accept, String contentType) {
+        this.accept = accept;
+        this.acceptable = accept == null ? WILDCARD : parse(accept);
+        this.consumed = contentType == null ? null : MediaRange.parse(contentType).withoutQuality();
+    }
+
+    static MediaTypes of(HttpServletRequest request) {
+        Enumeration<String> headers = request.getHeaders(HttpHeaders.ACCEPT);
+        String accept = null;
+        while (headers != null && headers.hasMoreElements()) {
+            String header = headers.nextElement();
+            accept = accept == null ? header : accept + "," + header;
+        }
+        return of(accept, request.getContentType());
+    }
+
+    static MediaTypes of(String accept, String contentType) {
+        if (isBlank(accept) && isBlank(contentType)) {
+            return ANY;
+        }
+        return new MediaTypes(isBlank(accept) ? null : accept, isBlank(contentType) ? null : contentType);
+    }
+
+    static MediaTypes accept(String... accept) {
+        return of(accept.length == 0 ? null : String.join(",", accept), null);
+    }
+
+    private static boolean isBlank(String header) {
+        return header == null || header.isBlank();
+    }
+
+    // 请求没有 Content-Type 时不限制 @Consumes
+    boolean isConsumable(MediaRange[] consumes) {
+        if (consumed == null) {
+            return true;
+        }
+        for (MediaRange range : consumes) {
+            if (range.includes(consumed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 在 @Produces 中找客户端最想要的媒体类型，返回值越大越好；客户端不接受任何一个时返回 -1。
+    // acceptable 按具体程度从高到低排序，第一个包含 produced 的 Accept 就是最具体的那个，由它决定 q 值。
+    int quality(MediaRange[] produces) {
+        int best = -1;
+        for (MediaRange produced : produces) {
+            for (MediaRange range : acceptable) {
+                if (range.includes(produced)) {
+                    best = Math.max(best, score(range, produced));
+                    break;
+                }
+                if (produced.includes(range)) {
+                    best = Math.max(best, score(range, produced));
+                }
+            }
+        }
+        return best;
+    }
+
+    private static int score(MediaRange range, MediaRange produced) {
+        if (range.quality() == 0) {
+            return -1;
+        }
+        return range.quality() * 10 + range.specificity() * 3 + produced.specificity();
+    }
+
+    static MediaRange[] produces(Method method) {
+        return annotated(Optional.ofNullable(method.getAnnotation(Produces.class)).map(Produces::value)
+                .or(() -> Optional.ofNullable(method.getDeclaringClass().getAnnotation(Produces.class))
+                        .map(Produces::value)));
+    }
+
+    static MediaRange[] consumes(Method method) {
+        return annotated(Optional.ofNullable(method.getAnnotation(Consumes.class)).map(Consumes::value)
+                .or(() -> Optional.ofNullable(method.getDeclaringClass().getAnnotation(Consumes.class))
+                        .map(Consumes::value)));
+    }
+
+    private static MediaRange[] annotated(Optional<String[]> values) {
+        return values.map(v -> ranges(String.join(",", v))).orElse(WILDCARD);
+    }
+
+    // 没有标注 @Produces / @Consumes 时可以是任意媒体类型
+    static MediaRange[] ranges(String values) {
+        return values.isBlank() ? WILDCARD : parse(values);
+    }
+
+    static MediaRange[] parse(String header) {
+        MediaRange[] ranges = parsed.get(header);
+        if (ranges != null) {
+            return ranges;
+        }
+        ranges = Arrays.stream(header.split(","))
+                .filter(value -> !value.isBlank())
+                .map(MediaRange::parse)
+                .sorted(Comparator.comparingInt(MediaRange::specificity).thenComparingInt(MediaRange::quality)
+                        .reversed())
+                .toArray(MediaRange[]::new);
+        if (ranges.length == 0) {
+            ranges = WILDCARD;
+        }
+        parsed.put(header, ranges);
+        return ranges;
+    }
+
+    static int cachedHeaders() {
+        return parsed.size();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MediaTypes that = (MediaTypes) o;
+        return Objects.equals(accept, that.accept) && Objects.equals(consumed, that.consumed);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(accept, consumed);
+    }
+
+    @Override
+    public String toString() {
+        return "Accept: " + accept + ", Content-Type: " + (consumed == null ? null : consumed.type() + "/" + consumed.subtype());
+    }
+
+    private static class HeaderCache {
+        private final int maximumSize;
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        private final Queue<String> clock = new ConcurrentLinkedQueue<>();
+
+        HeaderCache(int maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        MediaRange[] get(String header) {
+            Entry entry = entries.get(header);
+            if (entry == null) {
+                return null;
+            }
+            entry.referenced = true;
+            return entry.ranges;
+        }
+
+        void put(String header, MediaRange[] ranges) {
+            if (maximumSize <= 0 || entries.putIfAbsent(header, new Entry(ranges)) != null) {
+                return;
+            }
+            clock.offer(header);
+            while (entries.size() > maximumSize) {
+                evict();
+            }
+        }
+
+        private void evict() {
+            String header = clock.poll();
+            if (header == null) {
+                return;
+            }
+            Entry entry = entries.get(header);
+            if (entry != null && entry.referenced) {
+                entry.referenced = false;
+                clock.offer(header);
+                return;
+            }
+            entries.remove(header);
+        }
+
+        int size() {
+            return entries.size();
+        }
+    }
+
+    private static class Entry {
+        private final MediaRange[] ranges;
+        private volatile boolean referenced;
+
+        private Entry(MediaRange[] ranges) {
+            this.ranges = ranges;
+        }
+    }
+
+    // quality 是 q 值乘以 1000 后的整数，只保留协商需要的 type/subtype，忽略其他参数
+    record MediaRange(String type, String subtype, int quality) {
+
+        static MediaRange parse(String value) {
+            String[] parts = value.split(";");
+            String mediaType = parts[0].trim();
+            int slash = mediaType.indexOf('/');
+            String type = slash < 0 ? mediaType : mediaType.substring(0, slash);
+            String subtype = slash < 0 ? "*" : mediaType.substring(slash + 1);
+            int quality = 1000;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    quality = quality(parameter.substring(2));
+                }
+            }
+            return new MediaRange(type.toLowerCase(), subtype.toLowerCase(), quality);
+        }
+
+        // Content-Type 不带 q 值，按 1 处理
+        MediaRange withoutQuality() {
+            return quality == 1000 ? this : new MediaRange(type, subtype, 1000);
+        }
+
+        private static int quality(String value) {
+            try {
+                return (int) Math.round(Math.min(1, Math.max(0, Double.parseDouble(value))) * 1000);
+            } catch (NumberFormatException e) {
+                return 1000;
+            }
+        }
+
+        int specificity() {
+            if (type.equals("*")) {
+                return 0;
+            }
+            return subtype.equals("*") ? 1 : 2;
+        }
+
+        boolean includes(MediaRange other) {
+            if (type.equals("*")) {
+                return true;
+            }
+            if (!type.equals(other.type)) {
+                return false;
+            }
+            return subtype.equals("*") || subtype.equals(other.subtype);
+        }
+    }
+}
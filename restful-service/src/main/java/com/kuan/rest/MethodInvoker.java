@@ -4,79 +4,254 @@ import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.MultivaluedMap;
 import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.ParamConverter;
+import jakarta.ws.rs.ext.ParamConverterProvider;
 
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
 import java.lang.reflect.Type;
+import java.net.URI;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * @Author: qxkk
  * @Date: 2022/11/8
  */
 class MethodInvoker {
-    private static final ValueProvider pathParam = (parameter, uriInfo) ->
-            Optional.ofNullable(parameter.getAnnotation(PathParam.class))
-                    .map(annotation -> uriInfo.getPathParameters().get(annotation.value()));
-    private static final ValueProvider queryParam = (parameter, uriInfo) ->
-            Optional.ofNullable(parameter.getAnnotation(QueryParam.class))
-                    .map(annotation -> uriInfo.getQueryParameters().get(annotation.value()));
-    private static final List<ValueProvider> providers = List.of(pathParam, queryParam);
-
-    static Object invoke(Method method, ResourceContext resourceContext, UriInfoBuilder builder) {
-        try {
-            UriInfo uriInfo = builder.createUriInfo();
+    private final Binder[] binders;
+    private final boolean requiresUriInfo;
+    // @Suspended AsyncResponse 参数的位置，没有时为 -1
+    private final int suspended;
+    private final Invoker invoker;
 
-            Object[] parameters = Arrays.stream(method.getParameters())
-                    .map(parameter -> injectParameter(parameter, uriInfo)
-                            .or(() -> injectContext(parameter, resourceContext, uriInfo))
-                            .orElse(null)
-                    ).toArray();
+    MethodInvoker(Method method) {
+        this(method, Mode.DEFAULT);
+    }
 
-            return method.invoke(builder.getLastMatchedResource(), parameters);
-        } catch (InvocationTargetException e) {
-            if (e.getCause() instanceof WebApplicationException) {
-                throw (WebApplicationException) e.getCause();
-            }
-            throw new RuntimeException(e);
-        } catch (IllegalAccessException e) {
+    MethodInvoker(Method method, Mode mode) {
+        this.binders = Arrays.stream(method.getParameters()).map(MethodInvoker::binder).toArray(Binder[]::new);
+        this.requiresUriInfo = Arrays.stream(binders).anyMatch(Binder::requiresUriInfo);
+        Parameter[] parameters = method.getParameters();
+        this.suspended = IntStream.range(0, parameters.length)
+                .filter(i -> parameters[i].isAnnotationPresent(Suspended.class)).findFirst().orElse(-1);
+        this.invoker = mode.bind(method);
+    }
+
+    Object invoke(ResourceContext resourceContext, UriInfoBuilder builder) {
+        UriInfo uriInfo = requiresUriInfo ? builder.createUriInfo() : null;
+
+        Object[] parameters = new Object[binders.length];
+        for (int i = 0; i < binders.length; i++) {
+            parameters[i] = binders[i].bind(resourceContext, uriInfo);
+        }
+
+        try {
+            Object result = invoker.invoke(builder.getLastMatchedResource(), parameters);
+            // 挂起的资源方法通过 AsyncResponse 给出结果，方法本身的返回值没有意义
+            return suspended < 0 ? result : parameters[suspended];
+        } catch (WebApplicationException | Error e) {
+            throw e;
+        } catch (Throwable e) {
             throw new RuntimeException(e);
         }
     }
 
-    private static Optional<Object> injectParameter(Parameter parameter, UriInfo uriInfo) {
-        return providers.stream()
-                .map(provider -> provider.provide(parameter, uriInfo))
-                .filter(Optional::isPresent)
-                .findFirst()
-                .flatMap(values -> values.flatMap(v -> convert(parameter, v)));
+    // 每个参数从哪里取值、如何转换，都在绑定资源方法时确定，请求时只需依次执行
+    private static Binder binder(Parameter parameter) {
+        if (parameter.isAnnotationPresent(Suspended.class)) {
+            return (resourceContext, uriInfo) -> new DefaultAsyncResponse();
+        }
+        PathParam pathParam = parameter.getAnnotation(PathParam.class);
+        if (pathParam != null) {
+            return parameter(parameter, uriInfo -> uriInfo.getPathParameters().get(pathParam.value()));
+        }
+        QueryParam queryParam = parameter.getAnnotation(QueryParam.class);
+        if (queryParam != null) {
+            Optional<QueryString.MultiValued> multiValued = QueryString.MultiValued.of(parameter);
+            if (multiValued.isPresent()) {
+                return query(multiValued.get(), queryParam.value());
+            }
+            return parameter(parameter, uriInfo -> queryParameter(uriInfo.getQueryParameters(), queryParam.value()));
+        }
+        return context(parameter.getType());
+    }
+
+    // 取不到参数值或者无法转换时，和其他参数一样从上下文中获取
+    private static Binder parameter(Parameter parameter, Function<UriInfo, List<String>> provider) {
+        ValueConverter<Object> converter = converter(parameter.getType());
+        Binder missing = context(parameter.getType());
+        return new Binder() {
+            @Override
+            public Object bind(ResourceContext resourceContext, UriInfo uriInfo) {
+                List<String> values = provider.apply(uriInfo);
+                if (values == null) {
+                    return missing.bind(resourceContext, uriInfo);
+                }
+                Object value = converter.fromString(values);
+                return value != null ? value : missing.bind(resourceContext, uriInfo);
+            }
+
+            @Override
+            public boolean requiresUriInfo() {
+                return true;
+            }
+        };
     }
 
-    private static Optional<Object> injectContext(Parameter parameter, ResourceContext resourceContext, UriInfo uriInfo) {
-        if (parameter.getType().equals(ResourceContext.class)) {
-            return Optional.of(resourceContext);
+    // 基本类型和 String 直接转换，其他类型交给 ConverterRegistry，转换方式在第一次用到时解析
+    static ValueConverter<Object> converter(Class<?> type) {
+        ValueConverter<Object> primitive = PrimitiveConverter.converter(type);
+        return primitive != null ? primitive : ConverterRegistry.DEFAULT.converter(type);
+    }
+
+    // DefaultUriInfoBuilder 的查询参数按名字直接在位置索引上查找，只解码这一个参数
+    private static List<String> queryParameter(MultivaluedMap<String, String> parameters, String name) {
+        return parameters instanceof QueryParameters query ? query.values(name) : parameters.get(name);
+    }
+
+    // 基本类型数组和 List<Long> 等多值参数直接解析原始查询字符串；没有请求 URI 时退回到解析好的查询参数。
+    // 没有这个参数时得到空数组（空列表）；值为空或者不是数字时和 JAX-RS 规定的 @QueryParam 转换失败一样返回 404
+    private static Binder query(QueryString.MultiValued multiValued, String name) {
+        return new Binder() {
+            @Override
+            public Object bind(ResourceContext resourceContext, UriInfo uriInfo) {
+                try {
+                    URI uri = uriInfo.getRequestUri();
+                    if (uri != null) {
+                        String query = uri.getRawQuery();
+                        return multiValued.parse(query == null ? "" : query, name);
+                    }
+                    List<String> values = uriInfo.getQueryParameters().get(name);
+                    return multiValued.parse(values == null ? List.of() : values);
+                } catch (NumberFormatException e) {
+                    throw new StacklessWebApplicationException(Responses.NOT_FOUND);
+                }
+            }
+
+            @Override
+            public boolean requiresUriInfo() {
+                return true;
+            }
+        };
+    }
+
+    private static Binder context(Class<?> type) {
+        if (type.equals(ResourceContext.class)) {
+            return (resourceContext, uriInfo) -> resourceContext;
         }
-        if (parameter.getType().equals(UriInfo.class)) {
-            return Optional.of(uriInfo);
+        if (type.equals(UriInfo.class)) {
+            return new Binder() {
+                @Override
+                public Object bind(ResourceContext resourceContext, UriInfo uriInfo) {
+                    return uriInfo;
+                }
+
+                @Override
+                public boolean requiresUriInfo() {
+                    return true;
+                }
+            };
         }
-        return Optional.of(resourceContext.getResource(parameter.getType()));
+        return (resourceContext, uriInfo) -> resourceContext.getResource(type);
     }
 
-    private static Optional<Object> convert(Parameter parameter, List<String> values) {
-        return PrimitiveConverter.convert(parameter, values)
-                .or(() -> ConstructorConverter.convert(parameter.getType(), values.get(0)))
-                .or(() -> FactoryConverter.convert(parameter.getType(), values.get(0)));
+    interface Binder {
+        Object bind(ResourceContext resourceContext, UriInfo uriInfo);
 
+        default boolean requiresUriInfo() {
+            return false;
+        }
     }
 
-    interface ValueProvider {
-        Optional<List<String>> provide(Parameter parameter, UriInfo uriInfo);
+    // 调用绑定好的资源方法，资源方法自己抛出的异常原样抛出（反射调用时也会先拆掉 InvocationTargetException）
+    interface Invoker {
+        Object invoke(Object resource, Object[] arguments) throws Throwable;
+    }
+
+    enum Mode {
+        REFLECTION {
+            @Override
+            Invoker bind(Method method) {
+                return (resource, arguments) -> {
+                    try {
+                        return method.invoke(resource, arguments);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                };
+            }
+        },
+        // 每个方法只 unreflect 一次，得到固定参数个数、类型为 (Object, Object[])Object 的 MethodHandle，
+        // 调用时不再做访问检查和参数个数检查；无法访问的方法退回到反射调用
+        METHOD_HANDLE {
+            @Override
+            Invoker bind(Method method) {
+                try {
+                    MethodHandle handle = MethodHandles.lookup().unreflect(accessible(method))
+                            .asSpreader(Object[].class, method.getParameterCount())
+                            .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+                    return (resource, arguments) -> (Object) handle.invokeExact(resource, arguments);
+                } catch (IllegalAccessException | RuntimeException e) {
+                    return REFLECTION.bind(method);
+                }
+            }
+
+            // 资源类可能不是 public 的（比如包内的静态内部类），public 方法也需要打开访问权限才能 unreflect
+            private static Method accessible(Method method) {
+                method.trySetAccessible();
+                return method;
+            }
+        },
+        // 优先使用编译期生成的 invoker（见 GeneratedInvokers），资源类没有经过 route-processor 时退回到 METHOD_HANDLE
+        GENERATED {
+            private static final ClassValue<Optional<GeneratedInvokers>> generated = new ClassValue<>() {
+                @Override
+                protected Optional<GeneratedInvokers> computeValue(Class<?> type) {
+                    try {
+                        return Optional.of((GeneratedInvokers) Class.forName(type.getName() + GeneratedInvokers.SUFFIX,
+                                true, type.getClassLoader()).getConstructor().newInstance());
+                    } catch (ReflectiveOperationException | ClassCastException | LinkageError e) {
+                        return Optional.empty();
+                    }
+                }
+            };
+
+            @Override
+            Invoker bind(Method method) {
+                return generated.get(method.getDeclaringClass())
+                        .map(invokers -> invokers.invoker(signature(method)))
+                        .<Invoker>map(invoker -> invoker::invoke)
+                        .orElseGet(() -> METHOD_HANDLE.bind(method));
+            }
+
+            private static String signature(Method method) {
+                return Arrays.stream(method.getParameterTypes()).map(Class::getTypeName)
+                        .collect(Collectors.joining(",", method.getName() + "(", ")"));
+            }
+        };
+
+        static final Mode DEFAULT = Mode.valueOf(System.getProperty("kuan.rest.invoker", GENERATED.name()));
+
+        abstract Invoker bind(Method method);
     }
 
     interface ValueConverter<T> {
@@ -101,29 +276,143 @@ class PrimitiveConverter {
             String.class, MethodInvoker.ValueConverter.singleValue(s -> s)
     );
 
-    static Optional<Object> convert(Parameter parameter, List<String> values) {
-        return Optional.ofNullable(converters.get(parameter.getType()))
-                .map(c -> c.fromString(values));
+    // 不是基本类型和 String 时返回 null
+    static MethodInvoker.ValueConverter<Object> converter(Class<?> type) {
+        return converters.get(type);
     }
 }
 
-class ConstructorConverter {
-    public static Optional<Object> convert(Class<?> converter, String value) {
+/**
+ * 参数转换器注册表：每个目标类型的转换方式只解析一次，得到一个可以直接调用的 ValueConverter，包括无法转换的情况。
+ * <p>
+ * 解析顺序：Runtime 提供的 ParamConverterProvider、参数为 String 的构造函数、静态的 valueOf / fromString
+ * （枚举优先使用 fromString）；构造函数转换失败时仍然尝试工厂方法，都不行时返回 null。
+ * ResourceServlet 通过 {@link #use(Supplier)} 接入 Runtime 的 ParamConverterProvider，provider 变化时调用 {@link #invalidate()}，
+ * 已经绑定到参数上的转换器在下一次转换时重新解析。
+ */
+class ConverterRegistry {
+    static final ConverterRegistry DEFAULT = new ConverterRegistry();
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+    private static final MethodInvoker.ValueConverter<Object> NONE = values -> null;
+
+    private volatile Supplier<List<ParamConverterProvider>> providers = List::of;
+    private volatile Map<Class<?>, MethodInvoker.ValueConverter<Object>> converters = new ConcurrentHashMap<>();
+
+    void use(Supplier<List<ParamConverterProvider>> providers) {
+        this.providers = providers;
+        invalidate();
+    }
+
+    void invalidate() {
+        converters = new ConcurrentHashMap<>();
+    }
+
+    // 返回的转换器记住解析结果和解析时所在的那一代缓存，缓存没有被替换时直接调用，不再查找
+    MethodInvoker.ValueConverter<Object> converter(Class<?> type) {
+        return new MethodInvoker.ValueConverter<>() {
+            private Resolved resolved;
+
+            @Override
+            public Object fromString(List<String> values) {
+                Map<Class<?>, MethodInvoker.ValueConverter<Object>> current = converters;
+                Resolved resolved = this.resolved;
+                if (resolved == null || resolved.generation() != current) {
+                    resolved = new Resolved(current, current.computeIfAbsent(type, ConverterRegistry.this::resolve));
+                    this.resolved = resolved;
+                }
+                return resolved.converter().fromString(values);
+            }
+        };
+    }
+
+    private MethodInvoker.ValueConverter<Object> resolve(Class<?> type) {
+        List<ParamConverterProvider> providers = this.providers.get();
+        if (providers != null) {
+            for (ParamConverterProvider provider : providers) {
+                ParamConverter<?> converter = provider.getConverter(type, type, NO_ANNOTATIONS);
+                if (converter != null) {
+                    return MethodInvoker.ValueConverter.singleValue(converter::fromString);
+                }
+            }
+        }
+        MethodHandle constructor = handle(ConstructorConverter.find(type));
+        MethodHandle factory = handle(FactoryConverter.find(type));
+        if (constructor == null && factory == null) {
+            return NONE;
+        }
+        return values -> {
+            String value = values.get(0);
+            if (constructor != null) {
+                try {
+                    return (Object) constructor.invokeExact(value);
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    if (factory == null) {
+                        return null;
+                    }
+                }
+            }
+            try {
+                return (Object) factory.invokeExact(value);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                return null;
+            }
+        };
+    }
+
+    // 统一成 (String)Object 的 MethodHandle，调用时不用为可变参数分配数组
+    private static MethodHandle handle(Executable executable) {
+        if (executable == null) {
+            return null;
+        }
         try {
-            return Optional.of(converter.getConstructor(String.class).newInstance(value));
-        } catch (InstantiationException | IllegalAccessException | InvocationTargetException |
-                 NoSuchMethodException e) {
-            return Optional.empty();
+            MethodHandle handle = executable instanceof Constructor<?> constructor
+                    ? MethodHandles.lookup().unreflectConstructor(constructor)
+                    : MethodHandles.lookup().unreflect((Method) executable);
+            return handle.asType(MethodType.methodType(Object.class, String.class));
+        } catch (IllegalAccessException e) {
+            return null;
         }
     }
+
+    private record Resolved(Map<Class<?>, MethodInvoker.ValueConverter<Object>> generation,
+                            MethodInvoker.ValueConverter<Object> converter) {
+    }
 }
 
+// 查找时扫描 public 成员，不用 NoSuchMethodException 做流程控制；找不到时返回 null
+class ConstructorConverter {
+    static Constructor<?> find(Class<?> type) {
+        if (Modifier.isAbstract(type.getModifiers())) {
+            return null;
+        }
+        for (Constructor<?> constructor : type.getConstructors()) {
+            if (constructor.getParameterCount() == 1 && constructor.getParameterTypes()[0] == String.class) {
+                constructor.trySetAccessible();
+                return constructor;
+            }
+        }
+        return null;
+    }
+}
+
+// 枚举优先使用 fromString，其他类型优先使用 valueOf
 class FactoryConverter {
-    public static Optional<Object> convert(Class<?> converter, String value) {
-        try {
-            return Optional.of(converter.getMethod("valueOf", String.class).invoke(null, value));
-        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-            return Optional.empty();
+    static Method find(Class<?> type) {
+        List<String> names = type.isEnum() ? List.of("fromString", "valueOf") : List.of("valueOf", "fromString");
+        for (String name : names) {
+            for (Method method : type.getMethods()) {
+                if (method.getName().equals(name) && Modifier.isStatic(method.getModifiers())
+                        && method.getParameterCount() == 1 && method.getParameterTypes()[0] == String.class
+                        && type.isAssignableFrom(method.getReturnType())) {
+                    method.trySetAccessible();
+                    return method;
+                }
+            }
         }
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,234 @@
+package com.kuan.rest;
+
+import jakarta.ws.rs.core.MultivaluedMap;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * UriInfo.getQueryParameters() 的只读实现。
+ * <p>
+ * 创建时只扫描一遍原始查询字符串，记下每个参数的 &amp; / = 位置；取某个参数时才比较参数名、解码它的值，
+ * 解码共用同一个缓冲区。资源方法通常只读一两个参数，其余的跟踪参数不会被解码。
+ * 遍历全部参数（entrySet、size 等）时才会解码所有参数。
+ */
+final class QueryParameters extends AbstractMap<String, List<String>> implements MultivaluedMap<String, String> {
+    private final String query;
+    private final boolean decode;
+    // 每个参数三个位置：参数名开始、= 的位置（没有 = 时为 -1）、参数结束
+    private final int[] offsets;
+    private final int count;
+
+    private Map<String, List<String>> lookups;
+    private Map<String, List<String>> all;
+    private byte[] buffer;
+
+    QueryParameters(String query, boolean decode) {
+        this.query = query == null ? "" : query;
+        this.decode = decode;
+
+        int[] offsets = new int[24];
+        int count = 0;
+        int length = this.query.length();
+        int start = 0;
+        int equals = -1;
+        for (int i = 0; i <= length; i++) {
+            char c = i == length ? '&' : this.query.charAt(i);
+            if (c == '=' && equals < 0) {
+                equals = i;
+            } else if (c == '&') {
+                if (i > start) {
+                    if (count * 3 == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                    }
+                    offsets[count * 3] = start;
+                    offsets[count * 3 + 1] = equals;
+                    offsets[count * 3 + 2] = i;
+                    count++;
+                }
+                start = i + 1;
+                equals = -1;
+            }
+        }
+        this.offsets = offsets;
+        this.count = count;
+    }
+
+    // 第 from 个参数之后（包括它）名为 name 的参数的序号，没有时返回 -1
+    int indexOf(String name, int from) {
+        for (int i = from; i < count; i++) {
+            if (matches(i, name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    String value(int index) {
+        int equals = offsets[index * 3 + 1];
+        return equals < 0 ? "" : decode(equals + 1, offsets[index * 3 + 2]);
+    }
+
+    // 按参数名直接在位置索引上查找并解码，不经过 get 的缓存；只有一个值时不创建 ArrayList
+    List<String> values(String name) {
+        int first = indexOf(name, 0);
+        if (first < 0) {
+            return null;
+        }
+        int next = indexOf(name, first + 1);
+        if (next < 0) {
+            return List.of(value(first));
+        }
+        List<String> values = new ArrayList<>();
+        values.add(value(first));
+        for (int i = next; i >= 0; i = indexOf(name, i + 1)) {
+            values.add(value(i));
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    @Override
+    public List<String> get(Object key) {
+        if (!(key instanceof String name)) {
+            return null;
+        }
+        if (lookups == null) {
+            lookups = new HashMap<>();
+        } else if (lookups.containsKey(name)) {
+            return lookups.get(name);
+        }
+        List<String> values = values(name);
+        lookups.put(name, values);
+        return values;
+    }
+
+    @Override
+    public String getFirst(String key) {
+        int index = indexOf(key, 0);
+        return index < 0 ? null : value(index);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String name && indexOf(name, 0) >= 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public Set<Entry<String, List<String>>> entrySet() {
+        if (all == null) {
+            Map<String, List<String>> parameters = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                int end = offsets[i * 3 + 1] < 0 ? offsets[i * 3 + 2] : offsets[i * 3 + 1];
+                parameters.computeIfAbsent(decode(offsets[i * 3], end), k -> new ArrayList<>()).add(value(i));
+            }
+            parameters.replaceAll((name, list) -> Collections.unmodifiableList(list));
+            all = Collections.unmodifiableMap(parameters);
+        }
+        return all.entrySet();
+    }
+
+    @Override
+    public void putSingle(String key, String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void add(String key, String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addAll(String key, String... newValues) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addAll(String key, List<String> valueList) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addFirst(String key, String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean equalsIgnoreValueOrder(MultivaluedMap<String, String> other) {
+        if (this == other) {
+            return true;
+        }
+        if (!keySet().equals(other.keySet())) {
+            return false;
+        }
+        for (Entry<String, List<String>> entry : entrySet()) {
+            List<String> olist = other.get(entry.getKey());
+            if (entry.getValue().size() != olist.size()
+                    || !entry.getValue().containsAll(olist) || !olist.containsAll(entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matches(int index, String name) {
+        int start = offsets[index * 3];
+        int end = offsets[index * 3 + 1] < 0 ? offsets[index * 3 + 2] : offsets[index * 3 + 1];
+        if (decode && encoded(start, end)) {
+            return decode(start, end).equals(name);
+        }
+        return end - start == name.length() && query.startsWith(name, start);
+    }
+
+    private boolean encoded(int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = query.charAt(i);
+            if (c == '%' || c == '+') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String decode(int start, int end) {
+        if (!decode || !encoded(start, end)) {
+            return query.substring(start, end);
+        }
+        if (buffer == null || buffer.length < end - start) {
+            buffer = new byte[Math.max(64, end - start)];
+        }
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            char c = query.charAt(i);
+            if (c == '+') {
+                buffer[length++] = ' ';
+            } else if (c == '%' && i + 2 < end && hex(query.charAt(i + 1)) >= 0 && hex(query.charAt(i + 2)) >= 0) {
+                buffer[length++] = (byte) (hex(query.charAt(i + 1)) << 4 | hex(query.charAt(i + 2)));
+                i += 2;
+            } else if (c < 0x80) {
+                buffer[length++] = (byte) c;
+            } else {
+                // 查询字符串里混有未编码的非 ASCII 字符，交给 URLDecoder
+                return URLDecoder.decode(query.substring(start, end), StandardCharsets.UTF_8);
+            }
+        }
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static int hex(char c) {
+        return Character.digit(c, 16);
+    }
+}
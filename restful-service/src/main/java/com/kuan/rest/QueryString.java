@@ -0,0 +1,287 @@
+package com.kuan.rest;
+
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+/**
+ * 直接在原始（未解码的）查询字符串上取多值参数，数字逐个解析进基本类型数组，
+ * 不生成中间的 List&lt;String&gt;、子串和包装类型（Double 没有按区间解析的方法，只能截取子串）。
+ * 只有参数名或值里出现了 % 或 + 时才需要先解码。值为空或者不是数字时抛出 NumberFormatException。
+ */
+final class QueryString {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private QueryString() {
+    }
+
+    static long[] longs(String query, String name) {
+        long[] values = new long[INITIAL_CAPACITY];
+        int size = 0;
+        for (int start = 0; start < query.length(); ) {
+            int end = end(query, start);
+            int value = value(query, start, end, name);
+            if (value >= 0) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = encoded(query, value, end)
+                        ? Long.parseLong(decode(query, value, end))
+                        : Long.parseLong(query, value, end, 10);
+            }
+            start = end + 1;
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    static int[] ints(String query, String name) {
+        int[] values = new int[INITIAL_CAPACITY];
+        int size = 0;
+        for (int start = 0; start < query.length(); ) {
+            int end = end(query, start);
+            int value = value(query, start, end, name);
+            if (value >= 0) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = encoded(query, value, end)
+                        ? Integer.parseInt(decode(query, value, end))
+                        : Integer.parseInt(query, value, end, 10);
+            }
+            start = end + 1;
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    static double[] doubles(String query, String name) {
+        double[] values = new double[INITIAL_CAPACITY];
+        int size = 0;
+        for (int start = 0; start < query.length(); ) {
+            int end = end(query, start);
+            int value = value(query, start, end, name);
+            if (value >= 0) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = Double.parseDouble(encoded(query, value, end)
+                        ? decode(query, value, end)
+                        : query.substring(value, end));
+            }
+            start = end + 1;
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    // 拿不到原始查询字符串时，解析已经拆分、解码好的参数值
+    static long[] longs(List<String> values) {
+        long[] result = new long[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Long.parseLong(values.get(i));
+        }
+        return result;
+    }
+
+    static int[] ints(List<String> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Integer.parseInt(values.get(i));
+        }
+        return result;
+    }
+
+    static double[] doubles(List<String> values) {
+        double[] result = new double[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Double.parseDouble(values.get(i));
+        }
+        return result;
+    }
+
+    // List<Long> 等直接包装基本类型数组，只在资源方法取元素时装箱
+    static List<Long> asList(long[] values) {
+        return new Values<>(values.length, i -> values[i]);
+    }
+
+    static List<Integer> asList(int[] values) {
+        return new Values<>(values.length, i -> values[i]);
+    }
+
+    static List<Double> asList(double[] values) {
+        return new Values<>(values.length, i -> values[i]);
+    }
+
+    private static final class Values<T> extends AbstractList<T> implements RandomAccess {
+        private final int size;
+        private final IntFunction<T> element;
+
+        private Values(int size, IntFunction<T> element) {
+            this.size = size;
+            this.element = element;
+        }
+
+        @Override
+        public T get(int index) {
+            Objects.checkIndex(index, size);
+            return element.apply(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * 可以直接从查询字符串解析的多值参数类型：long[] / int[] / double[]，
+     * 以及元素为 Long / Integer / Double 的 List、Collection、Iterable。
+     */
+    enum MultiValued {
+        LONGS {
+            @Override
+            Object parse(String query, String name) {
+                return longs(query, name);
+            }
+
+            @Override
+            Object parse(List<String> values) {
+                return longs(values);
+            }
+        },
+        INTS {
+            @Override
+            Object parse(String query, String name) {
+                return ints(query, name);
+            }
+
+            @Override
+            Object parse(List<String> values) {
+                return ints(values);
+            }
+        },
+        DOUBLES {
+            @Override
+            Object parse(String query, String name) {
+                return doubles(query, name);
+            }
+
+            @Override
+            Object parse(List<String> values) {
+                return doubles(values);
+            }
+        },
+        LONG_LIST {
+            @Override
+            Object parse(String query, String name) {
+                return asList(longs(query, name));
+            }
+
+            @Override
+            Object parse(List<String> values) {
+                return asList(longs(values));
+            }
+        },
+        INT_LIST {
+            @Override
+            Object parse(String query, String name) {
+                return asList(ints(query, name));
+            }
+
+            @Override
+            Object parse(List<String> values) {
+                return asList(ints(values));
+            }
+        },
+        DOUBLE_LIST {
+            @Override
+            Object parse(String query, String name) {
+                return asList(doubles(query, name));
+            }
+
+            @Override
+            Object parse(List<String> values) {
+                return asList(doubles(values));
+            }
+        };
+
+        abstract Object parse(String query, String name);
+
+        abstract Object parse(List<String> values);
+
+        static Optional<MultiValued> of(Parameter parameter) {
+            Class<?> type = parameter.getType();
+            if (type == long[].class) {
+                return Optional.of(LONGS);
+            }
+            if (type == int[].class) {
+                return Optional.of(INTS);
+            }
+            if (type == double[].class) {
+                return Optional.of(DOUBLES);
+            }
+            if (!type.isAssignableFrom(List.class) || type == Object.class
+                    || !(parameter.getParameterizedType() instanceof ParameterizedType generic)) {
+                return Optional.empty();
+            }
+            Type element = generic.getActualTypeArguments()[0];
+            if (element == Long.class) {
+                return Optional.of(LONG_LIST);
+            }
+            if (element == Integer.class) {
+                return Optional.of(INT_LIST);
+            }
+            if (element == Double.class) {
+                return Optional.of(DOUBLE_LIST);
+            }
+            return Optional.empty();
+        }
+    }
+
+    private static int end(String query, int start) {
+        int end = query.indexOf('&', start);
+        return end < 0 ? query.length() : end;
+    }
+
+    // [start, end) 是名为 name 的参数时返回值的起始位置，否则返回 -1；只在 [start, end) 里找 =，没有值的参数不会扫描到查询字符串末尾
+    private static int value(String query, int start, int end, String name) {
+        int equals = indexOf(query, '=', start, end);
+        if (equals < 0) {
+            return -1;
+        }
+        boolean matched = encoded(query, start, equals)
+                ? decode(query, start, equals).equals(name)
+                : equals - start == name.length() && query.startsWith(name, start);
+        return matched ? equals + 1 : -1;
+    }
+
+    private static int indexOf(String query, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (query.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean encoded(String query, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = query.charAt(i);
+            if (c == '%' || c == '+') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String decode(String query, int start, int end) {
+        return URLDecoder.decode(query.substring(start, end), StandardCharsets.UTF_8);
+    }
+}
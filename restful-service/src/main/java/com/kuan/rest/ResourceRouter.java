@@ -1,19 +1,21 @@
 package com.kuan.rest;
 
-import com.sun.source.tree.CatchTree;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.container.ResourceContext;
 import jakarta.ws.rs.core.GenericEntity;
-import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriInfo;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -22,7 +24,7 @@ public interface ResourceRouter {
     OutboundResponse dispatch(HttpServletRequest request, ResourceContext resourceContext);
 
     interface Resource extends UriHandler {
-        Optional<ResourceMethod> match(UriTemplate.MatchResult result, String httpMethod, String[] mediaTypes,
+        Optional<ResourceMethod> match(UriTemplate.MatchResult result, String httpMethod, MediaTypes mediaTypes,
                                        ResourceContext resourceContext, UriInfoBuilder builder);
     }
 
@@ -38,108 +40,337 @@ public interface ResourceRouter {
 class DefaultResourceRoot implements ResourceRouter {
 
     private Runtime runtime;
-    private List<Resource> rootResources;
+    private UriHandlers.Matcher<Resource> rootResources;
+    private RouteCache routeCache;
 
     public DefaultResourceRoot(Runtime runtime, List<Resource> rootResources) {
+        this(runtime, rootResources, UriHandlers.Mode.LINEAR);
+    }
+
+    public DefaultResourceRoot(Runtime runtime, RouteTable routeTable, UriHandlers.Mode mode) {
+        this(runtime, routeTable.rootResources(mode), mode);
+    }
+
+    public DefaultResourceRoot(Runtime runtime, List<Resource> rootResources, UriHandlers.Mode mode) {
+        this(runtime, rootResources, mode, new RouteCache(0));
+    }
+
+    public DefaultResourceRoot(Runtime runtime, List<Resource> rootResources, UriHandlers.Mode mode,
+                               RouteCache routeCache) {
         this.runtime = runtime;
-        this.rootResources = rootResources;
+        this.rootResources = mode.compile(rootResources);
+        this.routeCache = routeCache;
     }
 
     @Override
     public OutboundResponse dispatch(HttpServletRequest request, ResourceContext resourceContext) {
-        String path = request.getServletPath();
         UriInfoBuilder uriInfoBuilder = runtime.createUriInfoBuilder(request);
-        List<Resource> rootResources = this.rootResources;
-        Optional<ResourceMethod> method = UriHandlers.mapMatched(path, rootResources,
-                (result, resource) -> getResourceMethod(request, resourceContext, uriInfoBuilder, result, resource));
+        MediaTypes mediaTypes = MediaTypes.of(request);
+        Optional<ResourceMethod> method = findResourceMethod(request, mediaTypes, resourceContext, uriInfoBuilder);
 
         if (method.isEmpty()) {
-            return (OutboundResponse) Response.status(Response.Status.NOT_FOUND).build();
+            return Responses.NOT_FOUND;
         }
 
         return (OutboundResponse) method.map(m -> m.call(resourceContext, uriInfoBuilder))
                 .map(entity -> {
-                    if (entity.getEntity() instanceof Response) {
-                        return (Response) entity.getEntity();
+                    if (entity.getEntity() instanceof DefaultAsyncResponse asyncResponse) {
+                        return Responses.suspended(asyncResponse,
+                                asyncResponse.stage().thenApply(DefaultResourceRoot::response));
                     }
-                    return Response.ok(entity).build();
+                    return response(entity);
                 })
-                .orElseGet(() -> Response.noContent().build());
+                .orElse(Responses.NO_CONTENT);
+    }
+
+    // 异步恢复的结果也可能是 Response、没有泛型信息的实体或者 null
+    private static OutboundResponse response(Object entity) {
+        if (entity == null) {
+            return Responses.NO_CONTENT;
+        }
+        if (entity instanceof GenericEntity<?> generic) {
+            return generic.getEntity() instanceof Response response ? (OutboundResponse) response
+                    : (OutboundResponse) Response.ok(generic).build();
+        }
+        if (entity instanceof Response response) {
+            return (OutboundResponse) response;
+        }
+        return (OutboundResponse) Response.ok(new GenericEntity<>(entity, entity.getClass())).build();
+    }
+
+    private Optional<ResourceMethod> findResourceMethod(HttpServletRequest request, MediaTypes mediaTypes,
+                                                        ResourceContext resourceContext,
+                                                        UriInfoBuilder uriInfoBuilder) {
+        if (!routeCache.isEnabled()) {
+            return resolve(request, mediaTypes, resourceContext, uriInfoBuilder);
+        }
+        return routeCache.get(request.getMethod(), request.getServletPath(), mediaTypes)
+                .map(route -> route.bind(resourceContext, uriInfoBuilder))
+                .or(() -> resolve(request, mediaTypes, resourceContext, uriInfoBuilder));
+    }
+
+    // 匹配只看资源类的结构，资源实例等匹配到资源方法之后才创建
+    private Optional<ResourceMethod> resolve(HttpServletRequest request, MediaTypes mediaTypes,
+                                             ResourceContext resourceContext, UriInfoBuilder uriInfoBuilder) {
+        RouteCache.Recorder recorder = new RouteCache.Recorder(uriInfoBuilder);
+        Optional<ResourceMethod> method = match(request, mediaTypes, resourceContext, recorder);
+        // OPTIONS 和 405 的响应是预先构造好的，不需要资源实例，也不缓存
+        if (method.filter(m -> m instanceof ResourceMethods.AllowResourceMethod).isPresent()) {
+            return method;
+        }
+        method.ifPresent(m -> recorder.bind(resourceContext));
+        if (routeCache.isEnabled()) {
+            method.flatMap(recorder::route).ifPresent(route ->
+                    routeCache.put(request.getMethod(), request.getServletPath(), mediaTypes, route));
+        }
+        return method;
     }
 
-    private static Optional<ResourceMethod>
-    getResourceMethod(HttpServletRequest request, ResourceContext resourceContext, UriInfoBuilder uriInfoBuilder,
-                      Optional<UriTemplate.MatchResult> matched, Resource handler) {
-        return handler.match(matched.get(), request.getMethod(),
-                Collections.list(request.getHeaders(HttpHeaders.ACCEPT)).toArray(String[]::new),
-                resourceContext, uriInfoBuilder);
+    private Optional<ResourceMethod> match(HttpServletRequest request, MediaTypes mediaTypes,
+                                           ResourceContext resourceContext, UriInfoBuilder uriInfoBuilder) {
+        return UriHandlers.mapMatched(request.getServletPath(), rootResources,
+                (result, resource) -> resource.match(result.get(), request.getMethod(), mediaTypes,
+                        resourceContext, uriInfoBuilder));
     }
 }
 
 
 class ResourceMethods {
-    private Map<String, List<ResourceRouter.ResourceMethod>> resourceMethods;
+    // Allow 按这个顺序写出
+    private static final List<String> methods = List.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.POST,
+            HttpMethod.PUT, HttpMethod.DELETE, HttpMethod.PATCH, HttpMethod.OPTIONS);
+    // 以允许的 HTTP 方法的位图为键，相同组合共用同一组预先构造好的 OPTIONS / 405 响应
+    private static final Map<Integer, Allowed> allowed = new ConcurrentHashMap<>();
+    private static final Allowed noMethods = allowed(0);
+
+    private Map<String, UriHandlers.Matcher<Candidates>> resourceMethods;
+    private UriHandlers.Matcher<AllowedMethods> allowedMethods;
 
     public ResourceMethods(Method[] methods) {
-        this.resourceMethods = getResourceMethods(methods);
+        this(methods, UriHandlers.Mode.LINEAR);
     }
 
-    private static Map<String, List<ResourceRouter.ResourceMethod>> getResourceMethods(Method[] methods) {
-        return Arrays.stream(methods)
+    public ResourceMethods(Method[] methods, UriHandlers.Mode mode) {
+        this(Arrays.stream(methods)
                 .filter(m -> Arrays.stream(m.getAnnotations())
                         .anyMatch(a -> a.annotationType().isAnnotationPresent(HttpMethod.class)))
-                .map(m -> (ResourceRouter.ResourceMethod) new DefaultResourceMethod(m))
-                .collect(Collectors.groupingBy(ResourceRouter.ResourceMethod::getHttpMethod));
+                .map(DefaultResourceMethod::new)
+                .toList(), mode);
+    }
+
+    ResourceMethods(List<DefaultResourceMethod> resourceMethods, UriHandlers.Mode mode) {
+        this.resourceMethods = getResourceMethods(resourceMethods, mode);
+        this.allowedMethods = mode.compile(getAllowedMethods(resourceMethods));
+    }
+
+    // 同一个 HTTP 方法下，模板相同的资源方法只在 @Produces / @Consumes 上有区别，合成一组，匹配到模板后再做内容协商
+    private static Map<String, UriHandlers.Matcher<Candidates>>
+    getResourceMethods(List<DefaultResourceMethod> methods, UriHandlers.Mode mode) {
+        return methods.stream()
+                .collect(Collectors.groupingBy(ResourceRouter.ResourceMethod::getHttpMethod,
+                        Collectors.collectingAndThen(
+                                Collectors.groupingBy(DefaultResourceMethod::getPath, LinkedHashMap::new,
+                                        Collectors.toList()),
+                                groups -> mode.compile(groups.values().stream()
+                                        .map(group -> new Candidates(group.get(0).getUriTemplate(), group))
+                                        .toList()))));
+    }
+
+    // 启动时按模板算好允许的 HTTP 方法：正则相同的模板匹配同样的路径，它们的方法总是允许的；
+    // 字面上就不可能匹配同一个路径的模板直接排除；剩下的（比如 {path:.+} 之于 {id}，{id} 之于 1234）只能在请求时按路径匹配
+    private static List<AllowedMethods> getAllowedMethods(List<DefaultResourceMethod> methods) {
+        Map<String, PathUriTemplate> templates = new LinkedHashMap<>();
+        for (DefaultResourceMethod method : methods) {
+            PathUriTemplate template = (PathUriTemplate) method.getUriTemplate();
+            templates.putIfAbsent(template.getRegex(), template);
+        }
+        return templates.values().stream().map(template -> {
+            int fixed = 0;
+            List<AllowedMethod> others = new ArrayList<>();
+            for (DefaultResourceMethod method : methods) {
+                int index = ResourceMethods.methods.indexOf(method.getHttpMethod());
+                if (index < 0) {
+                    continue;
+                }
+                PathUriTemplate other = (PathUriTemplate) method.getUriTemplate();
+                if (other.getRegex().equals(template.getRegex())) {
+                    fixed |= 1 << index;
+                } else if (!disjoint(template.getTemplate(), other.getTemplate())) {
+                    others.add(new AllowedMethod(1 << index, other));
+                }
+            }
+            return new AllowedMethods(template, fixed, List.copyOf(others), allowed(fixed));
+        }).toList();
+    }
+
+    // 两个模板逐段比较，同一段都是不同的字面量时不可能匹配同一个路径；只有默认变量时段数不同也不可能。
+    // 自定义正则的变量可能跨越 /，字面量里的正则元字符也一样，遇到之后就无法判断
+    private static boolean disjoint(String template, String other) {
+        String[] segments = template.split("/", -1);
+        String[] otherSegments = other.split("/", -1);
+        for (int i = 0; i < Math.min(segments.length, otherSegments.length); i++) {
+            boolean literal = isLiteral(segments[i]);
+            boolean otherLiteral = isLiteral(otherSegments[i]);
+            if (literal && otherLiteral && !segments[i].equals(otherSegments[i])) {
+                return true;
+            }
+            if (!literal && !isVariable(segments[i]) || !otherLiteral && !isVariable(otherSegments[i])) {
+                return false;
+            }
+        }
+        return segments.length != otherSegments.length;
+    }
+
+    private static boolean isLiteral(String segment) {
+        return segment.chars().allMatch(c -> Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '~');
+    }
+
+    // 只匹配一段的默认变量
+    private static boolean isVariable(String segment) {
+        return segment.startsWith("{") && segment.endsWith("}") && segment.indexOf(':') < 0
+                && segment.indexOf('{', 1) < 0;
     }
 
     public Optional<ResourceRouter.ResourceMethod> findResourceMethods(String path, String httpMethod) {
-        return findMethod(path, httpMethod)
-                .or(() -> findAlternative(path, httpMethod));
+        return findResourceMethods(path, httpMethod, MediaTypes.ANY);
+    }
+
+    public Optional<ResourceRouter.ResourceMethod> findResourceMethods(String path, String httpMethod,
+                                                                       MediaTypes mediaTypes) {
+        return findMethod(path, httpMethod, mediaTypes)
+                .or(() -> findAlternative(path, httpMethod, mediaTypes));
     }
 
-    private Optional<ResourceRouter.ResourceMethod> findAlternative(String path, String httpMethod) {
+    // 路径匹配到了资源方法而 HTTP 方法没有匹配到时是 405，不再交给子资源定位器
+    private Optional<ResourceRouter.ResourceMethod> findAlternative(String path, String httpMethod,
+                                                                    MediaTypes mediaTypes) {
         if (HttpMethod.HEAD.equals(httpMethod)) {
-            return findMethod(path, HttpMethod.GET).map(HeadResourceMethod::new);
+            Optional<ResourceRouter.ResourceMethod> get = findMethod(path, HttpMethod.GET, mediaTypes)
+                    .map(HeadResourceMethod::new);
+            if (get.isPresent()) {
+                return get;
+            }
         }
         if (HttpMethod.OPTIONS.equals(httpMethod)) {
-            return Optional.of(new OptionResourceMethod(path));
+            return Optional.of(findAllowed(path).options());
         }
-        return Optional.empty();
+        return allowedMethods.fullyMatched(path).map(result -> allowed(result.handler(), path).notAllowed());
     }
 
-    private Optional<ResourceRouter.ResourceMethod> findMethod(String path, String httpMethod) {
+    private Optional<ResourceRouter.ResourceMethod> findMethod(String path, String httpMethod,
+                                                               MediaTypes mediaTypes) {
         return Optional.ofNullable(resourceMethods.get(httpMethod))
-                .flatMap(methods -> UriHandlers.match(path, methods, r -> r.getRemaining() == null));
+                .flatMap(methods -> methods.fullyMatched(path))
+                .map(result -> result.handler().negotiate(mediaTypes));
     }
 
-    class OptionResourceMethod implements ResourceRouter.ResourceMethod {
-        private String path;
+    Set<String> findAllowedMethods(String path) {
+        return findAllowed(path).methods();
+    }
+
+    private Allowed findAllowed(String path) {
+        return allowedMethods.fullyMatched(path).map(result -> allowed(result.handler(), path)).orElse(noMethods);
+    }
 
-        public OptionResourceMethod(String path) {
-            this.path = path;
+    private static Allowed allowed(AllowedMethods methods, String path) {
+        if (methods.others().isEmpty()) {
+            return methods.allowed();
+        }
+        int matched = methods.fixed();
+        for (AllowedMethod other : methods.others()) {
+            if ((matched & other.bit()) == 0
+                    && other.uriTemplate().match(path).filter(r -> r.getRemaining() == null).isPresent()) {
+                matched |= other.bit();
+            }
         }
+        return allowed(matched);
+    }
+
+    private static Allowed allowed(int matched) {
+        return allowed.computeIfAbsent(matched, key -> {
+            Set<String> allowed = new HashSet<>();
+            for (int i = 0; i < methods.size(); i++) {
+                if ((key & 1 << i) != 0) {
+                    allowed.add(methods.get(i));
+                }
+            }
+            allowed.add(HttpMethod.OPTIONS);
+            if (allowed.contains(HttpMethod.GET)) {
+                allowed.add(HttpMethod.HEAD);
+            }
+            List<String> ordered = methods.stream().filter(allowed::contains).toList();
+            return new Allowed(Set.copyOf(ordered),
+                    new AllowResourceMethod(Responses.allow(Response.Status.NO_CONTENT, ordered)),
+                    new AllowResourceMethod(Responses.allow(Response.Status.METHOD_NOT_ALLOWED, ordered)));
+        });
+    }
 
+    // fixed 是总是允许的方法的位图，others 是要在请求时按路径匹配的其他模板
+    record AllowedMethods(UriTemplate uriTemplate, int fixed, List<AllowedMethod> others, Allowed allowed)
+            implements UriHandler {
         @Override
-        public String getHttpMethod() {
-            return null;
+        public UriTemplate getUriTemplate() {
+            return uriTemplate;
         }
+    }
 
+    record AllowedMethod(int bit, UriTemplate uriTemplate) {
+    }
+
+    record Allowed(Set<String> methods, AllowResourceMethod options, AllowResourceMethod notAllowed) {
+    }
+
+    record Candidates(UriTemplate uriTemplate, List<DefaultResourceMethod> methods) implements UriHandler {
         @Override
-        public GenericEntity<?> call(ResourceContext resourceContext, UriInfoBuilder builder) {
-            return new GenericEntity<>(Response.noContent().allow(findAllowedMethods()).build(), Response.class);
+        public UriTemplate getUriTemplate() {
+            return uriTemplate;
         }
 
-        private Set<String> findAllowedMethods() {
-            List<String> methods = List.of(HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT, HttpMethod.DELETE,
-                    HttpMethod.OPTIONS, HttpMethod.PATCH, HttpMethod.HEAD);
-            Set<String> allowed = methods.stream()
-                    .filter(method -> findMethod(path, method).isPresent())
-                    .collect(Collectors.toSet());
-            allowed.add(HttpMethod.OPTIONS);
-            if (allowed.contains(HttpMethod.GET)) {
-                allowed.add(HttpMethod.HEAD);
+        // 先按 Content-Type 过滤 @Consumes，再选 Accept 里最想要的 @Produces；同样好时保持声明顺序
+        ResourceRouter.ResourceMethod negotiate(MediaTypes mediaTypes) {
+            if (methods.size() == 1 && mediaTypes == MediaTypes.ANY) {
+                return methods.get(0);
             }
-            return allowed;
+            boolean consumable = false;
+            DefaultResourceMethod best = null;
+            int bestQuality = -1;
+            for (DefaultResourceMethod method : methods) {
+                if (!mediaTypes.isConsumable(method.getConsumes())) {
+                    continue;
+                }
+                consumable = true;
+                int quality = mediaTypes.quality(method.getProduces());
+                if (quality > bestQuality) {
+                    best = method;
+                    bestQuality = quality;
+                }
+            }
+            if (!consumable) {
+                throw Responses.notSupported();
+            }
+            if (best == null) {
+                throw Responses.notAcceptable();
+            }
+            return best;
+        }
+    }
+
+    // OPTIONS 和 405 的响应都是预先构造好的，不需要资源实例，也不经过 RuntimeDelegate
+    static class AllowResourceMethod implements ResourceRouter.ResourceMethod {
+        private final GenericEntity<?> response;
+
+        AllowResourceMethod(OutboundResponse response) {
+            this.response = new GenericEntity<>(response, Response.class);
+        }
+
+        @Override
+        public String getHttpMethod() {
+            return null;
+        }
+
+        @Override
+        public GenericEntity<?> call(ResourceContext resourceContext, UriInfoBuilder builder) {
+            return response;
         }
 
         @Override
@@ -180,20 +411,33 @@ class HeadResourceMethod implements ResourceRouter.ResourceMethod {
 class DefaultResourceMethod implements ResourceRouter.ResourceMethod {
 
     private String httpMethod;
+    private String path;
     private UriTemplate uriTemplate;
     private Method method;
+    private MethodInvoker invoker;
+    private Type asyncType;
+    private MediaTypes.MediaRange[] produces;
+    private MediaTypes.MediaRange[] consumes;
 
     public DefaultResourceMethod(Method method) {
+        this(method, Arrays.stream(method.getAnnotations())
+                        .filter(a -> a.annotationType().isAnnotationPresent(HttpMethod.class))
+                        .findFirst()
+                        .get().annotationType().getAnnotation(HttpMethod.class).value(),
+                Optional.ofNullable(method.getAnnotation(Path.class)).map(Path::value).orElse(""),
+                MediaTypes.produces(method), MediaTypes.consumes(method));
+    }
+
+    DefaultResourceMethod(Method method, String httpMethod, String path,
+                          MediaTypes.MediaRange[] produces, MediaTypes.MediaRange[] consumes) {
         this.method = method;
-        this.uriTemplate = new PathUriTemplate(
-                Optional.ofNullable(method.getAnnotation(Path.class))
-                        .map(Path::value)
-                        .orElse("")
-        );
-        this.httpMethod = Arrays.stream(method.getAnnotations())
-                .filter(a -> a.annotationType().isAnnotationPresent(HttpMethod.class))
-                .findFirst()
-                .get().annotationType().getAnnotation(HttpMethod.class).value();
+        this.invoker = new MethodInvoker(method);
+        this.asyncType = asyncType(method);
+        this.httpMethod = httpMethod;
+        this.path = path;
+        this.uriTemplate = new PathUriTemplate(path);
+        this.produces = produces;
+        this.consumes = consumes;
     }
 
     @Override
@@ -206,13 +450,48 @@ class DefaultResourceMethod implements ResourceRouter.ResourceMethod {
         return uriTemplate;
     }
 
+    String getPath() {
+        return path;
+    }
+
+    MediaTypes.MediaRange[] getProduces() {
+        return produces;
+    }
+
+    MediaTypes.MediaRange[] getConsumes() {
+        return consumes;
+    }
+
+    // CompletionStage<T> 的 T；不是具体类型时按结果的实际类型写出
+    private static Type asyncType(Method method) {
+        if (!CompletionStage.class.isAssignableFrom(method.getReturnType())
+                || !(method.getGenericReturnType() instanceof ParameterizedType type)) {
+            return null;
+        }
+        Type result = type.getActualTypeArguments()[0];
+        return result instanceof Class<?> || result instanceof ParameterizedType ? result : null;
+    }
+
     @Override
     public GenericEntity<?> call(ResourceContext resourceContext, UriInfoBuilder builder) {
-        Object result = MethodInvoker.invoke(method, resourceContext, builder);
+        Object result = invoker.invoke(resourceContext, builder);
 
+        if (result instanceof CompletionStage<?> stage) {
+            result = DefaultAsyncResponse.of(stage, this::asyncEntity);
+        }
+        if (result instanceof DefaultAsyncResponse) {
+            return new GenericEntity<>(result, DefaultAsyncResponse.class);
+        }
         return result != null ? new GenericEntity<>(result, method.getGenericReturnType()) : null;
     }
 
+    private Object asyncEntity(Object value) {
+        if (value == null || value instanceof Response || asyncType == null) {
+            return value;
+        }
+        return new GenericEntity<>(value, asyncType);
+    }
+
 
     @Override
     public String toString() {
@@ -223,18 +502,27 @@ class DefaultResourceMethod implements ResourceRouter.ResourceMethod {
 
 class SubResourceLocators {
 
-    private List<ResourceRouter.Resource> subResourceLocators;
+    private UriHandlers.Matcher<ResourceRouter.Resource> subResourceLocators;
 
     public SubResourceLocators(Method[] methods) {
-        subResourceLocators = Arrays.stream(methods)
+        this(methods, UriHandlers.Mode.LINEAR);
+    }
+
+    public SubResourceLocators(Method[] methods, UriHandlers.Mode mode) {
+        this(Arrays.stream(methods)
                 .filter(m -> m.isAnnotationPresent(Path.class)
                         && Arrays.stream(m.getAnnotations())
                         .noneMatch(a -> a.annotationType().isAnnotationPresent(HttpMethod.class)))
-                .map((Function<Method, ResourceRouter.Resource>) SubResourceLocator::new).toList();
+                .toList(), mode);
+    }
+
+    SubResourceLocators(List<Method> locators, UriHandlers.Mode mode) {
+        subResourceLocators = mode.compile(locators.stream()
+                .map((Function<Method, ResourceRouter.Resource>) m -> new SubResourceLocator(m, mode)).toList());
     }
 
     public Optional<ResourceRouter.ResourceMethod>
-    findSubResourceMethods(String path, String method, String[] mediaTypes,
+    findSubResourceMethods(String path, String method, MediaTypes mediaTypes,
                            ResourceContext resourceContext, UriInfoBuilder uriInfoBuilder) {
         return UriHandlers.mapMatched(path, subResourceLocators, (result, locator) ->
                 locator.match(result.get(), method, mediaTypes, resourceContext, uriInfoBuilder)
@@ -245,10 +533,26 @@ class SubResourceLocators {
 
         private PathUriTemplate uriTemplate;
         private Method method;
+        private MethodInvoker invoker;
+        private UriHandlers.Mode mode;
+        private boolean deferrable;
 
         public SubResourceLocator(Method method) {
+            this(method, UriHandlers.Mode.LINEAR);
+        }
+
+        public SubResourceLocator(Method method, UriHandlers.Mode mode) {
             this.method = method;
+            this.invoker = new MethodInvoker(method);
+            this.mode = mode;
             this.uriTemplate = new PathUriTemplate(method.getAnnotation(Path.class).value());
+            this.deferrable = isFinal(method.getReturnType());
+        }
+
+        // 声明的返回类型不能被继承时（final 类、record），实际类型一定就是它，可以按它匹配子资源方法，不必先调用定位器；
+        // 否则定位器可能返回子类，子类上的资源方法只有拿到实例后按实际类型匹配才能找到
+        private static boolean isFinal(Class<?> type) {
+            return !type.isPrimitive() && !type.isArray() && Modifier.isFinal(type.getModifiers());
         }
 
         @Override
@@ -263,12 +567,23 @@ class SubResourceLocators {
 
         @Override
         public Optional<ResourceRouter.ResourceMethod>
-        match(UriTemplate.MatchResult result, String httpMethod, String[] mediaTypes,
+        match(UriTemplate.MatchResult result, String httpMethod, MediaTypes mediaTypes,
               ResourceContext resourceContext, UriInfoBuilder builder) {
             try {
-                Object subResource = MethodInvoker.invoke(method, resourceContext, builder);
-                return new ResourceHandler(subResource, uriTemplate)
-                        .match(result, httpMethod, mediaTypes, resourceContext, builder);
+                if (!method.isAnnotationPresent(Deterministic.class)) {
+                    RouteCache.uncacheable(builder);
+                }
+                RouteCache.Step step = (rc, b) -> {
+                    Object resource = invoker.invoke(rc, b);
+                    b.addMatchedResource(resource);
+                    b.addMatchedPathParameters(result);
+                    return resource;
+                };
+                Object subResource = deferrable ? RouteCache.bind(step, resourceContext, builder)
+                        : RouteCache.bindNow(step, resourceContext, builder);
+                Class<?> subResourceClass = subResource != null ? subResource.getClass() : method.getReturnType();
+                return ResourceModel.of(subResourceClass, mode)
+                        .findResourceMethod(result, httpMethod, mediaTypes, resourceContext, builder);
             } catch (WebApplicationException e) {
                 throw e;
             } catch (Exception e) {
@@ -283,13 +598,15 @@ class ResourceHandler implements ResourceRouter.Resource {
 
     private UriTemplate uriTemplate;
 
-    private ResourceMethods resourceMethods;
-
-    private SubResourceLocators subResourceLocators;
+    private ResourceModel model;
     private Function<ResourceContext, Object> resource;
 
     public ResourceHandler(Class<?> resourceClass) {
-        this(resourceClass, new PathUriTemplate(getTemplate(resourceClass)), rc -> rc.getResource(resourceClass));
+        this(resourceClass, UriHandlers.Mode.LINEAR);
+    }
+
+    public ResourceHandler(Class<?> resourceClass, UriHandlers.Mode mode) {
+        this(resourceClass, new PathUriTemplate(getTemplate(resourceClass)), rc -> rc.getResource(resourceClass), mode);
     }
 
     private static String getTemplate(Class<?> resourceClass) {
@@ -299,34 +616,43 @@ class ResourceHandler implements ResourceRouter.Resource {
         return resourceClass.getAnnotation(Path.class).value();
     }
 
+    static ResourceHandler root(Class<?> resourceClass, String template, UriHandlers.Mode mode) {
+        return new ResourceHandler(resourceClass, new PathUriTemplate(template), rc -> rc.getResource(resourceClass),
+                mode);
+    }
+
     public ResourceHandler(Object resource, UriTemplate uriTemplate) {
-        this(resource.getClass(), uriTemplate, rc -> resource);
+        this(resource, uriTemplate, UriHandlers.Mode.LINEAR);
+    }
+
+    public ResourceHandler(Object resource, UriTemplate uriTemplate, UriHandlers.Mode mode) {
+        this(resource.getClass(), uriTemplate, rc -> resource, mode);
     }
 
     private ResourceHandler(Class<?> resourceClass, UriTemplate uriTemplate,
-                            Function<ResourceContext, Object> resource) {
+                            Function<ResourceContext, Object> resource, UriHandlers.Mode mode) {
         this.uriTemplate = uriTemplate;
-        this.resourceMethods = new ResourceMethods(resourceClass.getMethods());
-        this.subResourceLocators = new SubResourceLocators(resourceClass.getMethods());
+        this.model = ResourceModel.of(resourceClass, mode);
         this.resource = resource;
     }
 
     @Override
     public Optional<ResourceRouter.ResourceMethod>
-    match(UriTemplate.MatchResult result, String httpMethod, String[] mediaTypes,
+    match(UriTemplate.MatchResult result, String httpMethod, MediaTypes mediaTypes,
           ResourceContext resourceContext, UriInfoBuilder builder) {
-        builder.addMatchedResource(resource.apply(resourceContext));
-        builder.addMatchedPathParameters(result.getMatchedPathParameters());
-
-        String remaining = Optional.ofNullable(result.getRemaining()).orElse("");
-        return resourceMethods.findResourceMethods(remaining, httpMethod)
-                .or(() -> subResourceLocators.findSubResourceMethods(remaining, httpMethod, mediaTypes,
-                        resourceContext, builder));
+        RouteCache.bind((rc, b) -> {
+            Object instance = resource.apply(rc);
+            b.addMatchedResource(instance);
+            b.addMatchedPathParameters(result);
+            return instance;
+        }, resourceContext, builder);
+
+        return model.findResourceMethod(result, httpMethod, mediaTypes, resourceContext, builder);
     }
 
     private Optional<ResourceRouter.ResourceMethod> alternative(String remaining, String httpMethod) {
         if ("HEAD".equals(httpMethod)) {
-            return resourceMethods.findResourceMethods(remaining, "GET");
+            return model.resourceMethods().findResourceMethods(remaining, "GET");
         }
         return Optional.empty();
     }
@@ -340,4 +666,50 @@ class ResourceHandler implements ResourceRouter.Resource {
         return uriTemplate;
     }
 
-}
\ No newline at end of file
+}
+
+// 资源类的方法表、子资源定位器以及其中编译好的 UriTemplate 都只和资源类有关，按类缓存，
+// 每次请求只需要在它之上绑定资源实例。
+class ResourceModel {
+    private static final Map<Key, ResourceModel> models = new ConcurrentHashMap<>();
+
+    private final ResourceMethods resourceMethods;
+    private final SubResourceLocators subResourceLocators;
+
+    static ResourceModel of(Class<?> resourceClass, UriHandlers.Mode mode) {
+        return models.computeIfAbsent(new Key(resourceClass, mode), ResourceModel::new);
+    }
+
+    // 编译期生成的路由表里有这个类时直接使用，否则反射扫描资源类的方法
+    private ResourceModel(Key key) {
+        Optional<RouteTable.Routes> routes = RouteTable.routes().find(key.resourceClass());
+        if (routes.isPresent()) {
+            this.resourceMethods = new ResourceMethods(routes.get().methods(), key.mode());
+            this.subResourceLocators = new SubResourceLocators(routes.get().locators(), key.mode());
+            return;
+        }
+        Method[] methods = key.resourceClass().getMethods();
+        this.resourceMethods = new ResourceMethods(methods, key.mode());
+        this.subResourceLocators = new SubResourceLocators(methods, key.mode());
+    }
+
+    ResourceMethods resourceMethods() {
+        return resourceMethods;
+    }
+
+    SubResourceLocators subResourceLocators() {
+        return subResourceLocators;
+    }
+
+    Optional<ResourceRouter.ResourceMethod>
+    findResourceMethod(UriTemplate.MatchResult result, String httpMethod, MediaTypes mediaTypes,
+                       ResourceContext resourceContext, UriInfoBuilder builder) {
+        String remaining = Optional.ofNullable(result.getRemaining()).orElse("");
+        return resourceMethods.findResourceMethods(remaining, httpMethod, mediaTypes)
+                .or(() -> subResourceLocators.findSubResourceMethods(remaining, httpMethod, mediaTypes,
+                        resourceContext, builder));
+    }
+
+    private record Key(Class<?> resourceClass, UriHandlers.Mode mode) {
+    }
+}
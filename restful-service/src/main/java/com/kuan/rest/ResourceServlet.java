@@ -1,68 +1,442 @@
 package com.kuan.rest;
 
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.HttpMethod;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MultivaluedMap;
 import jakarta.ws.rs.ext.ExceptionMapper;
 import jakarta.ws.rs.ext.MessageBodyWriter;
 import jakarta.ws.rs.ext.Providers;
-import jakarta.ws.rs.ext.RuntimeDelegate;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.util.Callback;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 public class ResourceServlet extends HttpServlet {
+    // 长度未知的响应体最多缓冲这么多字节，超过之后剩余部分通过 WriteListener 异步写出
+    static final int ASYNC_WRITE_THRESHOLD = Integer.getInteger("kuan.rest.async-write-threshold", 64 * 1024);
 
     private Runtime runtime;
     private Providers providers;
+    private Executor executor;
+    private Executor writers;
 
     public ResourceServlet(Runtime runtime) {
+        this(runtime, Dispatch.DEFAULT.executor());
+    }
+
+    /**
+     * executor 不为 null 时，分发请求和写出响应都交给它执行，容器线程通过 startAsync 立即释放；
+     * 为 null 时在容器线程上阻塞执行，可能超过 ASYNC_WRITE_THRESHOLD 的响应实体交给 EntityWriters 序列化。
+     */
+    public ResourceServlet(Runtime runtime, Executor executor) {
+        this(runtime, executor, EntityWriters.EXECUTOR);
+    }
+
+    ResourceServlet(Runtime runtime, Executor executor, Executor writers) {
         this.runtime = runtime;
-        this.providers = runtime.getProviders();
+        this.providers = CachingProviders.of(runtime.getProviders());
+        this.executor = executor;
+        this.writers = writers;
+        ConverterRegistry.DEFAULT.use(runtime::getParamConverterProviders);
+        runtime.addProvidersListener(this::providersChanged);
+    }
+
+    // 缓存的 provider 查找结果和参数转换器都要作废
+    private void providersChanged() {
+        if (providers instanceof CachingProviders caching) {
+            caching.invalidate();
+        }
+        ConverterRegistry.DEFAULT.invalidate();
     }
 
     @Override
     protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         ResourceRouter router = runtime.getResourceRouter();
+        Supplier<OutboundResponse> dispatch = () -> router.dispatch(req, runtime.createResourceContext(req, resp));
 
-        respond(resp, () -> router.dispatch(req, runtime.createResourceContext(req, resp)));
+        if (executor == null || !req.isAsyncSupported()) {
+            respond(req, resp, dispatch);
+            return;
+        }
+        AsyncContext context = req.startAsync(req, resp);
+        context.setTimeout(0);
+        try {
+            executor.execute(() -> {
+                boolean written = true;
+                try {
+                    written = respond(req, resp, dispatch);
+                } finally {
+                    // 挂起的响应由 suspend 负责结束异步上下文
+                    if (written) {
+                        context.complete();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            context.complete();
+            throw new ServletException(exception);
+        }
     }
 
-    private void respond(HttpServletResponse resp, Supplier<OutboundResponse> supplier) {
+    // 响应已经写完时返回 true；响应被挂起或者还在异步写出时返回 false，由异步的一方结束 AsyncContext
+    private boolean respond(HttpServletRequest req, HttpServletResponse resp, Supplier<OutboundResponse> supplier) {
         try {
-            respond(resp, supplier.get());
-        } catch (WebApplicationException exception) {
-            respond(resp, () -> (OutboundResponse) exception.getResponse());
+            return respond(req, resp, supplier.get());
         } catch (Throwable throwable) {
-            respond(resp, () -> from(throwable));
+            return fail(req, resp, throwable);
+        }
+    }
+
+    private boolean fail(HttpServletRequest req, HttpServletResponse resp, Throwable throwable) {
+        if (throwable instanceof WebApplicationException exception) {
+            return respond(req, resp, () -> (OutboundResponse) exception.getResponse());
         }
+        return respond(req, resp, () -> from(throwable));
     }
 
-    private void respond(HttpServletResponse resp, OutboundResponse response) throws IOException {
+    private boolean respond(HttpServletRequest req, HttpServletResponse resp, OutboundResponse response)
+            throws IOException {
+        Optional<Responses.SuspendedResponse> suspended = Responses.suspended(response);
+        if (suspended.isPresent()) {
+            suspend(req, resp, suspended.get());
+            return false;
+        }
         resp.setStatus(response.getStatus());
+        // 预先构造的响应只有状态码
+        if (Responses.isPrebuilt(response)) {
+            return true;
+        }
         headers(resp, response.getHeaders());
-        body(resp, response, response.getGenericEntity());
+        if (HttpMethod.HEAD.equals(req.getMethod())) {
+            contentLength(resp, response, response.getGenericEntity());
+            return true;
+        }
+        return body(req, resp, response, response.getGenericEntity());
+    }
+
+    // 异步资源方法：释放容器线程，等 AsyncResponse 恢复之后在恢复它的线程上写出响应
+    private void suspend(HttpServletRequest req, HttpServletResponse resp, Responses.SuspendedResponse suspended) {
+        DefaultAsyncResponse asyncResponse = suspended.asyncResponse();
+        if (!req.isAsyncSupported()) {
+            // 容器不支持异步时只能阻塞等待；join 抛出的 CompletionException 要拆开，才能按原来的异常（比如超时的 503）响应
+            Throwable failure = null;
+            try {
+                OutboundResponse response = suspended.response().toCompletableFuture().join();
+                respond(req, resp, () -> response);
+            } catch (CompletionException | CancellationException exception) {
+                failure = DefaultAsyncResponse.unwrap(exception);
+                fail(req, resp, failure);
+            }
+            asyncResponse.completed(failure);
+            return;
+        }
+        AsyncContext context = async(req, resp);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        context.addListener(new AsyncListener() {
+            // 响应写完（包括异步写出）之后才通知 CompletionCallback
+            @Override
+            public void onComplete(AsyncEvent event) {
+                asyncResponse.completed(failure.get());
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                asyncResponse.disconnected();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        suspended.response().whenComplete((response, error) -> {
+            boolean written = true;
+            try {
+                if (error == null) {
+                    written = respond(req, resp, () -> response);
+                } else {
+                    failure.set(DefaultAsyncResponse.unwrap(error));
+                    written = fail(req, resp, failure.get());
+                }
+            } finally {
+                if (written) {
+                    context.complete();
+                }
+            }
+        });
+    }
+
+    // 已经交给 executor 分发或者已经挂起的请求沿用原来的异步上下文
+    private static AsyncContext async(HttpServletRequest req, HttpServletResponse resp) {
+        if (req.isAsyncStarted()) {
+            return req.getAsyncContext();
+        }
+        AsyncContext context = req.startAsync(req, resp);
+        // 超时由 AsyncResponse.setTimeout 或者 kuan.rest.async-timeout 控制，容器不再计时
+        context.setTimeout(0);
+        return context;
     }
 
-    private void body(HttpServletResponse resp, OutboundResponse response, GenericEntity entity) throws IOException {
+    // StreamingOutput、Stream 和 Iterator 边生成边写出；
+    // 已知长度不超过 ASYNC_WRITE_THRESHOLD 的实体直接写到响应里；
+    // 其余的先序列化到池化的缓冲区，最多缓冲 ASYNC_WRITE_THRESHOLD 字节，超过之后边序列化边通过 WriteListener 写出（见 buffered）
+    private boolean body(HttpServletRequest req, HttpServletResponse resp, OutboundResponse response,
+                         GenericEntity entity) throws IOException {
         if (entity == null) {
+            return true;
+        }
+        if (StreamingEntities.isStreaming(entity.getEntity())) {
+            try {
+                StreamingEntities.write(providers, response, entity, resp.getOutputStream());
+            } catch (Throwable throwable) {
+                // 已经发送的元素收不回来，只能中断连接；还在缓冲区里时丢弃，按异常响应
+                if (resp.isCommitted()) {
+                    abort(req, throwable);
+                    return true;
+                }
+                resp.resetBuffer();
+                throw throwable;
+            }
+            return true;
+        }
+        if (FileEntities.isFile(entity.getEntity())) {
+            return file(req, resp, response, entity.getEntity());
+        }
+        MessageBodyWriter writer = providers.getMessageBodyWriter(entity.getRawType(), entity.getType(),
+                response.getAnnotations(), response.getMediaType());
+        long size = writer.getSize(entity.getEntity(), entity.getRawType(), entity.getType(),
+                response.getAnnotations(), response.getMediaType());
+        if (size >= 0 && size <= ASYNC_WRITE_THRESHOLD) {
+            writer.writeTo(entity.getEntity(), entity.getRawType(), entity.getType(),
+                    response.getAnnotations(), response.getMediaType(), response.getHeaders(), resp.getOutputStream());
+            return true;
+        }
+        // 容器不支持异步，只能阻塞写出
+        if (!req.isAsyncSupported()) {
+            return buffered(req, resp, response, entity, writer, resp::getOutputStream);
+        }
+        // 已经在分发线程上，剩余部分交给 EntityPipe，由 WriteListener 写出
+        if (executor != null) {
+            return buffered(req, resp, response, entity, writer, () -> pipe(req, resp));
+        }
+        // 在容器线程上等不到 WriteListener：序列化交给 writers，容器线程立即返回
+        AsyncContext context = async(req, resp);
+        writers.execute(() -> {
+            boolean written = true;
+            try {
+                written = buffered(req, resp, response, entity, writer, () -> pipe(req, resp));
+            } catch (Throwable throwable) {
+                written = fail(req, resp, throwable);
+            } finally {
+                if (written) {
+                    context.complete();
+                }
+            }
+        });
+        return false;
+    }
+
+    // 长度未知时先缓冲，不超过 ASYNC_WRITE_THRESHOLD 就能给出 Content-Length；超过之后剩余部分不再缓冲，直接交给 overflow
+    private boolean buffered(HttpServletRequest req, HttpServletResponse resp, OutboundResponse response,
+                             GenericEntity entity, MessageBodyWriter writer, Overflow overflow) throws IOException {
+        EntityBuffer buffer = new EntityBuffer();
+        BufferedEntityStream stream = new BufferedEntityStream(buffer, overflow);
+        try {
+            writer.writeTo(entity.getEntity(), entity.getRawType(), entity.getType(),
+                    response.getAnnotations(), response.getMediaType(), response.getHeaders(), stream);
+        } catch (Throwable throwable) {
+            buffer.release();
+            if (stream.overflow == null) {
+                throw throwable;
+            }
+            // 已经开始写出，不能再换成错误响应
+            abort(req, throwable);
+            if (stream.overflow instanceof EntityPipe pipe) {
+                pipe.abort(throwable);
+                return false;
+            }
+            return true;
+        }
+        if (stream.overflow instanceof EntityPipe pipe) {
+            pipe.close();
+            return false;
+        }
+        if (stream.overflow != null) {
+            return true;
+        }
+        if (!response.getHeaders().containsKey(HttpHeaders.CONTENT_LENGTH)) {
+            resp.setContentLengthLong(buffer.size());
+        }
+        try {
+            buffer.writeTo(resp.getOutputStream());
+        } finally {
+            buffer.release();
+        }
+        return true;
+    }
+
+    // 写入的一方在队列满的时候等待 WriteListener，堆上最多缓冲 ASYNC_WRITE_THRESHOLD 字节
+    private static OutputStream pipe(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        ServletOutputStream output = resp.getOutputStream();
+        EntityPipe pipe = new EntityPipe(async(req, resp), output, ASYNC_WRITE_THRESHOLD / EntityBuffer.CHUNK_SIZE);
+        output.setWriteListener(pipe);
+        return pipe;
+    }
+
+    // 响应已经开始写出之后出错：中断连接，让客户端知道响应不完整，而不是收到一个看起来完整的响应
+    private static void abort(HttpServletRequest req, Throwable throwable) {
+        org.eclipse.jetty.server.Request request = org.eclipse.jetty.server.Request.getBaseRequest(req);
+        if (request == null) {
+            throw new IllegalStateException("response already committed", throwable);
+        }
+        request.getHttpChannel().abort(throwable);
+    }
+
+    // 文件以 FileChannel 交给 Jetty 的 HttpOutput.sendContent，由 Jetty 读取并关闭；支持异步时发送过程中不占用线程
+    private boolean file(HttpServletRequest req, HttpServletResponse resp, OutboundResponse response, Object entity)
+            throws IOException {
+        try {
+            fileHeaders(resp, response, entity);
+            if (!(resp.getOutputStream() instanceof HttpOutput output)) {
+                FileEntities.copy(entity, resp.getOutputStream());
+                close(entity);
+                return true;
+            }
+            ByteBuffer content = FileEntities.mapped(entity);
+            if (!req.isAsyncSupported()) {
+                if (content != null) {
+                    output.sendContent(content);
+                } else {
+                    output.sendContent(FileEntities.open(entity));
+                }
+                close(entity);
+                return true;
+            }
+            AsyncContext context = async(req, resp);
+            Callback callback = Callback.from(() -> {
+                close(entity);
+                context.complete();
+            }, throwable -> {
+                close(entity);
+                context.complete();
+            });
+            if (content != null) {
+                output.sendContent(content, callback);
+            } else {
+                output.sendContent(FileEntities.open(entity), callback);
+            }
+            return false;
+        } catch (Throwable throwable) {
+            close(entity);
+            throw throwable;
+        }
+    }
+
+    private static void fileHeaders(HttpServletResponse resp, OutboundResponse response, Object entity)
+            throws IOException {
+        if (!response.getHeaders().containsKey(HttpHeaders.CONTENT_LENGTH)) {
+            resp.setContentLengthLong(FileEntities.length(entity));
+        }
+        long lastModified = FileEntities.lastModified(entity);
+        if (lastModified >= 0 && !response.getHeaders().containsKey(HttpHeaders.LAST_MODIFIED)) {
+            resp.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        }
+    }
+
+    private static void close(Object entity) {
+        try {
+            FileEntities.close(entity);
+        } catch (IOException ignored) {
+        }
+    }
+
+    // HEAD 请求不需要响应体，只需要准确的 Content-Length：
+    // 资源自己给出了 Content-Length 就直接使用，其次问 MessageBodyWriter 要长度，最后才把实体写到只计数的输出流里
+    private void contentLength(HttpServletResponse resp, OutboundResponse response, GenericEntity entity)
+            throws IOException {
+        if (entity == null) {
+            return;
+        }
+        // 边生成边写出的实体没有长度
+        if (StreamingEntities.isStreaming(entity.getEntity())) {
+            StreamingEntities.close(entity.getEntity());
+            return;
+        }
+        if (FileEntities.isFile(entity.getEntity())) {
+            try {
+                fileHeaders(resp, response, entity.getEntity());
+            } finally {
+                close(entity.getEntity());
+            }
+            return;
+        }
+        if (response.getHeaders().containsKey(HttpHeaders.CONTENT_LENGTH)) {
             return;
         }
         MessageBodyWriter writer = providers.getMessageBodyWriter(entity.getRawType(), entity.getType(),
                 response.getAnnotations(), response.getMediaType());
-        writer.writeTo(entity.getEntity(), entity.getRawType(), entity.getType(),
-                response.getAnnotations(), response.getMediaType(), response.getHeaders(), resp.getOutputStream());
+        long size = writer.getSize(entity.getEntity(), entity.getRawType(), entity.getType(),
+                response.getAnnotations(), response.getMediaType());
+        if (size < 0) {
+            CountingOutputStream counter = new CountingOutputStream();
+            writer.writeTo(entity.getEntity(), entity.getRawType(), entity.getType(),
+                    response.getAnnotations(), response.getMediaType(), response.getHeaders(), counter);
+            size = counter.count;
+        }
+        resp.setContentLengthLong(size);
     }
 
+    // 预先编码好的 HttpField 直接交给 Jetty，不再格式化；Content-Type / Content-Length 仍然经过 addHeader 让 Jetty 处理
     private void headers(HttpServletResponse resp, MultivaluedMap<String, Object> headers) {
-        for (String name : headers.keySet()) {
-            for (Object value : headers.get(name)) {
-                RuntimeDelegate.HeaderDelegate headerDelegate = RuntimeDelegate.getInstance().createHeaderDelegate(value.getClass());
-                resp.addHeader(name, headerDelegate.toString(value));
+        HttpFields.Mutable fields = resp instanceof org.eclipse.jetty.server.Response jetty ? jetty.getHttpFields() : null;
+        for (Map.Entry<String, List<Object>> header : headers.entrySet()) {
+            String name = header.getKey();
+            for (Object value : header.getValue()) {
+                if (value instanceof HttpField field) {
+                    if (fields != null && field.getHeader() != HttpHeader.CONTENT_TYPE
+                            && field.getHeader() != HttpHeader.CONTENT_LENGTH) {
+                        fields.add(field);
+                    } else {
+                        resp.addHeader(field.getName(), field.getValue());
+                    }
+                } else {
+                    resp.addHeader(name, HeaderDelegates.toString(value));
+                }
             }
         }
     }
@@ -71,4 +445,135 @@ public class ResourceServlet extends HttpServlet {
         ExceptionMapper exceptionMapper = providers.getExceptionMapper(throwable.getClass());
         return (OutboundResponse) exceptionMapper.toResponse(throwable);
     }
+
+    /**
+     * 请求分发方式，默认 BLOCKING，可以通过系统属性 kuan.rest.dispatch 切换。
+     * <p>
+     * VIRTUAL 让每个请求在自己的虚拟线程上分发，资源方法里的阻塞 I/O 不再占用容器线程池；
+     * 虚拟线程需要 Java 21，运行在更早的 JVM 上时创建 ResourceServlet 直接失败，不会悄悄退化成无界的平台线程池。
+     */
+    enum Dispatch {
+        BLOCKING {
+            @Override
+            Executor executor() {
+                return null;
+            }
+        },
+        VIRTUAL {
+            @Override
+            Executor executor() {
+                if (!VirtualThreads.AVAILABLE) {
+                    throw new IllegalStateException("kuan.rest.dispatch=VIRTUAL requires virtual threads (Java 21+), running on Java "
+                            + System.getProperty("java.specification.version"));
+                }
+                return VirtualThreads.EXECUTOR;
+            }
+        };
+
+        static final Dispatch DEFAULT = Dispatch.valueOf(System.getProperty("kuan.rest.dispatch", BLOCKING.name()));
+
+        abstract Executor executor();
+    }
+
+    // 项目以 Java 17 为基线编译，通过 MethodHandle 查找 Executors.newVirtualThreadPerTaskExecutor，找不到时 EXECUTOR 为 null
+    static final class VirtualThreads {
+        static final boolean AVAILABLE;
+        static final Executor EXECUTOR;
+
+        static {
+            Executor executor;
+            try {
+                MethodHandle factory = MethodHandles.publicLookup().findStatic(Executors.class,
+                        "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+                executor = (Executor) factory.invoke();
+            } catch (Throwable e) {
+                executor = null;
+            }
+            AVAILABLE = executor != null;
+            EXECUTOR = executor;
+        }
+
+        private VirtualThreads() {
+        }
+    }
+
+    /**
+     * BLOCKING 模式下序列化大的响应实体的线程。写入的一方在客户端读得慢时会等待 WriteListener，
+     * 虚拟线程可用时每个实体一个虚拟线程，否则最多 kuan.rest.entity-writer-threads 个守护平台线程，其余的排队。
+     */
+    static final class EntityWriters {
+        static final int THREADS = Integer.getInteger("kuan.rest.entity-writer-threads", 64);
+        static final Executor EXECUTOR = VirtualThreads.AVAILABLE ? VirtualThreads.EXECUTOR : pool();
+
+        private static Executor pool() {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "entity-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+
+        private EntityWriters() {
+        }
+    }
+
+    private static class BufferedEntityStream extends OutputStream {
+        private final EntityBuffer buffer;
+        private final Overflow overflowTo;
+        private OutputStream overflow;
+
+        BufferedEntityStream(EntityBuffer buffer, Overflow overflowTo) {
+            this.buffer = buffer;
+            this.overflowTo = overflowTo;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (overflow != null) {
+                overflow.write(b);
+                return;
+            }
+            buffer.write(b);
+            overflowIfFull();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (overflow != null) {
+                overflow.write(b, off, len);
+                return;
+            }
+            buffer.write(b, off, len);
+            overflowIfFull();
+        }
+
+        private void overflowIfFull() throws IOException {
+            if (buffer.size() > ASYNC_WRITE_THRESHOLD) {
+                overflow = overflowTo.get();
+                buffer.writeTo(overflow);
+                buffer.release();
+            }
+        }
+    }
+
+    interface Overflow {
+        OutputStream get() throws IOException;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
 }
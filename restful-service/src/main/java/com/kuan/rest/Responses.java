@@ -0,0 +1,334 @@
+package com.kuan.rest;
+
+import jakarta.ws.rs.NotAcceptableException;
+import jakarta.ws.rs.NotSupportedException;
+import jakarta.ws.rs.core.AbstractMultivaluedMap;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.GenericType;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Link;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.NewCookie;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+
+import java.lang.annotation.Annotation;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 预先构造好的、只有状态码的响应：没有实体也没有响应头，不可修改，可以在所有请求之间共享。
+ * <p>
+ * 路由不匹配、协商失败、资源方法返回 null 时直接使用，不再经过 RuntimeDelegate 构造 Response；
+ * ResourceServlet 遇到它们时只设置状态码。OPTIONS 和 405 的响应另外带着预先编码好的 Allow（见 {@link #allow(Response.Status, List)}）。
+ * <p>
+ * 异步资源方法返回的是挂起的响应（见 {@link #suspended(DefaultAsyncResponse, CompletionStage)}），
+ * 真正的响应要等 CompletionStage 完成之后才知道。
+ */
+final class Responses {
+    static final OutboundResponse NO_CONTENT = new StatusResponse(Response.Status.NO_CONTENT);
+    static final OutboundResponse NOT_FOUND = new StatusResponse(Response.Status.NOT_FOUND);
+    static final OutboundResponse METHOD_NOT_ALLOWED = new StatusResponse(Response.Status.METHOD_NOT_ALLOWED);
+    static final OutboundResponse NOT_ACCEPTABLE = new StatusResponse(Response.Status.NOT_ACCEPTABLE);
+    static final OutboundResponse UNSUPPORTED_MEDIA_TYPE = new StatusResponse(Response.Status.UNSUPPORTED_MEDIA_TYPE);
+    static final OutboundResponse SERVICE_UNAVAILABLE = new StatusResponse(Response.Status.SERVICE_UNAVAILABLE);
+
+    private static final Map<Integer, OutboundResponse> prebuilt = Map.of(
+            204, NO_CONTENT, 404, NOT_FOUND, 405, METHOD_NOT_ALLOWED, 406, NOT_ACCEPTABLE,
+            415, UNSUPPORTED_MEDIA_TYPE, 503, SERVICE_UNAVAILABLE);
+
+    private Responses() {
+    }
+
+    // 没有预先构造的状态码才通过 RuntimeDelegate 构造
+    static Response status(int status) {
+        OutboundResponse response = prebuilt.get(status);
+        return response != null ? response : Response.status(status).build();
+    }
+
+    static boolean isPrebuilt(Response response) {
+        return response instanceof StatusResponse;
+    }
+
+    // OPTIONS 的 204 和 405 都带 Allow，Allow 在构造时就编码好；methods 按写出的顺序给出
+    static OutboundResponse allow(Response.Status status, List<String> methods) {
+        return new AllowResponse(status, methods);
+    }
+
+    static OutboundResponse suspended(DefaultAsyncResponse asyncResponse, CompletionStage<OutboundResponse> response) {
+        return new SuspendedResponse(asyncResponse, response);
+    }
+
+    static Optional<SuspendedResponse> suspended(Response response) {
+        return response instanceof SuspendedResponse suspended ? Optional.of(suspended) : Optional.empty();
+    }
+
+    // 内容协商失败是常见的客户端错误，异常不需要调用栈
+    static NotAcceptableException notAcceptable() {
+        return new NotAcceptableException("HTTP 406 Not Acceptable", NOT_ACCEPTABLE) {
+            @Override
+            public synchronized Throwable fillInStackTrace() {
+                return this;
+            }
+        };
+    }
+
+    static NotSupportedException notSupported() {
+        return new NotSupportedException("HTTP 415 Unsupported Media Type", UNSUPPORTED_MEDIA_TYPE) {
+            @Override
+            public synchronized Throwable fillInStackTrace() {
+                return this;
+            }
+        };
+    }
+
+    private static final class StatusResponse extends EmptyResponse {
+        private final Response.Status status;
+
+        private StatusResponse(Response.Status status) {
+            this.status = status;
+        }
+
+        @Override
+        public int getStatus() {
+            return status.getStatusCode();
+        }
+
+        @Override
+        public StatusType getStatusInfo() {
+            return status;
+        }
+
+        @Override
+        public String toString() {
+            return "HTTP " + status.getStatusCode() + " " + status.getReasonPhrase();
+        }
+    }
+
+    private static final class AllowResponse extends EmptyResponse {
+        private final Response.Status status;
+        private final Set<String> methods;
+        private final String allow;
+        private final MultivaluedMap<String, Object> headers;
+        private final MultivaluedMap<String, String> stringHeaders;
+
+        private AllowResponse(Response.Status status, List<String> methods) {
+            this.status = status;
+            this.methods = Set.copyOf(methods);
+            this.allow = String.join(", ", methods);
+            this.headers = new AbstractMultivaluedMap<>(Map.of(HttpHeaders.ALLOW,
+                    List.of(new PreEncodedHttpField(HttpHeader.ALLOW, allow)))) {
+            };
+            this.stringHeaders = new AbstractMultivaluedMap<>(Map.of(HttpHeaders.ALLOW, List.of(allow))) {
+            };
+        }
+
+        @Override
+        public int getStatus() {
+            return status.getStatusCode();
+        }
+
+        @Override
+        public StatusType getStatusInfo() {
+            return status;
+        }
+
+        @Override
+        public Set<String> getAllowedMethods() {
+            return methods;
+        }
+
+        @Override
+        public MultivaluedMap<String, Object> getMetadata() {
+            return headers;
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getStringHeaders() {
+            return stringHeaders;
+        }
+
+        @Override
+        public String getHeaderString(String name) {
+            return HttpHeaders.ALLOW.equalsIgnoreCase(name) ? allow : null;
+        }
+    }
+
+    // 异步资源方法的响应：状态码只是占位，ResourceServlet 会挂起请求，等 response 完成后再写出真正的响应
+    static final class SuspendedResponse extends EmptyResponse {
+        private final DefaultAsyncResponse asyncResponse;
+        private final CompletionStage<OutboundResponse> response;
+
+        private SuspendedResponse(DefaultAsyncResponse asyncResponse, CompletionStage<OutboundResponse> response) {
+            this.asyncResponse = asyncResponse;
+            this.response = response;
+        }
+
+        DefaultAsyncResponse asyncResponse() {
+            return asyncResponse;
+        }
+
+        CompletionStage<OutboundResponse> response() {
+            return response;
+        }
+
+        @Override
+        public int getStatus() {
+            return Response.Status.ACCEPTED.getStatusCode();
+        }
+
+        @Override
+        public StatusType getStatusInfo() {
+            return Response.Status.ACCEPTED;
+        }
+    }
+
+    private abstract static class EmptyResponse extends OutboundResponse {
+        private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+        private final MultivaluedMap<String, Object> headers = new AbstractMultivaluedMap<>(Collections.emptyMap()) {
+        };
+        private final MultivaluedMap<String, String> stringHeaders = new AbstractMultivaluedMap<>(
+                Collections.emptyMap()) {
+        };
+
+        @Override
+        GenericEntity getGenericEntity() {
+            return null;
+        }
+
+        @Override
+        Annotation[] getAnnotations() {
+            return NO_ANNOTATIONS;
+        }
+
+        @Override
+        public Object getEntity() {
+            return null;
+        }
+
+        @Override
+        public <T> T readEntity(Class<T> entityType) {
+            throw new IllegalStateException("no entity");
+        }
+
+        @Override
+        public <T> T readEntity(GenericType<T> entityType) {
+            throw new IllegalStateException("no entity");
+        }
+
+        @Override
+        public <T> T readEntity(Class<T> entityType, Annotation[] annotations) {
+            throw new IllegalStateException("no entity");
+        }
+
+        @Override
+        public <T> T readEntity(GenericType<T> entityType, Annotation[] annotations) {
+            throw new IllegalStateException("no entity");
+        }
+
+        @Override
+        public boolean hasEntity() {
+            return false;
+        }
+
+        @Override
+        public boolean bufferEntity() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public MediaType getMediaType() {
+            return null;
+        }
+
+        @Override
+        public Locale getLanguage() {
+            return null;
+        }
+
+        @Override
+        public int getLength() {
+            return -1;
+        }
+
+        @Override
+        public Set<String> getAllowedMethods() {
+            return Set.of();
+        }
+
+        @Override
+        public Map<String, NewCookie> getCookies() {
+            return Map.of();
+        }
+
+        @Override
+        public EntityTag getEntityTag() {
+            return null;
+        }
+
+        @Override
+        public Date getDate() {
+            return null;
+        }
+
+        @Override
+        public Date getLastModified() {
+            return null;
+        }
+
+        @Override
+        public URI getLocation() {
+            return null;
+        }
+
+        @Override
+        public Set<Link> getLinks() {
+            return Set.of();
+        }
+
+        @Override
+        public boolean hasLink(String relation) {
+            return false;
+        }
+
+        @Override
+        public Link getLink(String relation) {
+            return null;
+        }
+
+        @Override
+        public Link.Builder getLinkBuilder(String relation) {
+            return null;
+        }
+
+        @Override
+        public MultivaluedMap<String, Object> getMetadata() {
+            return headers;
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getStringHeaders() {
+            return stringHeaders;
+        }
+
+        @Override
+        public String getHeaderString(String name) {
+            return null;
+        }
+    }
+}
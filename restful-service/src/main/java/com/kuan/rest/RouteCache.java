@@ -0,0 +1,187 @@
+package com.kuan.rest;
+
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.UriInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按 (HTTP 方法, servlet path, Accept / Content-Type) 缓存已经解析好的路由：依次绑定到 UriInfoBuilder 上的资源和路径参数，以及最终的资源方法。
+ * 命中缓存时不再做模板匹配、子资源定位和资源方法选择，只需要按顺序重放这些绑定步骤。
+ * <p>
+ * 只缓存匹配成功的请求；经过子资源定位器的路由，只有定位器标注了 {@link Deterministic} 才会被缓存。
+ * 容量满了之后按 CLOCK（second chance）淘汰。
+ */
+class RouteCache {
+
+    private final int maximumSize;
+    private final Map<Key, Entry> routes = new ConcurrentHashMap<>();
+    private final Queue<Key> clock = new ConcurrentLinkedQueue<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    RouteCache(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    boolean isEnabled() {
+        return maximumSize > 0;
+    }
+
+    Optional<Route> get(String httpMethod, String path, MediaTypes mediaTypes) {
+        Entry entry = routes.get(new Key(httpMethod, path, mediaTypes));
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        entry.referenced = true;
+        return Optional.of(entry.route);
+    }
+
+    void put(String httpMethod, String path, MediaTypes mediaTypes, Route route) {
+        Key key = new Key(httpMethod, path, mediaTypes);
+        if (routes.putIfAbsent(key, new Entry(route)) != null) {
+            return;
+        }
+        clock.offer(key);
+        while (routes.size() > maximumSize) {
+            evict();
+        }
+    }
+
+    private void evict() {
+        Key key = clock.poll();
+        if (key == null) {
+            return;
+        }
+        Entry entry = routes.get(key);
+        if (entry != null && entry.referenced) {
+            entry.referenced = false;
+            clock.offer(key);
+            return;
+        }
+        routes.remove(key);
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    int size() {
+        return routes.size();
+    }
+
+    // 把资源绑定到 UriInfoBuilder 上。正在记录路由时只把这一步记下来，等匹配到资源方法后再创建资源实例，返回 null
+    static Object bind(Step step, ResourceContext resourceContext, UriInfoBuilder builder) {
+        if (builder instanceof Recorder recorder) {
+            recorder.steps.add(step);
+            return null;
+        }
+        return step.bind(resourceContext, builder);
+    }
+
+    // 匹配需要资源实例才能继续时，先绑定之前记下的步骤，再立即执行这一步
+    static Object bindNow(Step step, ResourceContext resourceContext, UriInfoBuilder builder) {
+        if (builder instanceof Recorder recorder) {
+            recorder.steps.add(step);
+            return recorder.bind(resourceContext);
+        }
+        return step.bind(resourceContext, builder);
+    }
+
+    static void uncacheable(UriInfoBuilder builder) {
+        if (builder instanceof Recorder recorder) {
+            recorder.cacheable = false;
+        }
+    }
+
+    interface Step {
+        Object bind(ResourceContext resourceContext, UriInfoBuilder builder);
+    }
+
+    record Route(List<Step> steps, ResourceRouter.ResourceMethod method) {
+        ResourceRouter.ResourceMethod bind(ResourceContext resourceContext, UriInfoBuilder builder) {
+            for (Step step : steps) {
+                step.bind(resourceContext, builder);
+            }
+            return method;
+        }
+    }
+
+    private record Key(String httpMethod, String path, MediaTypes mediaTypes) {
+    }
+
+    private static class Entry {
+        private final Route route;
+        private volatile boolean referenced;
+
+        private Entry(Route route) {
+            this.route = route;
+        }
+    }
+
+    // 匹配阶段只记录绑定步骤，未匹配的请求不会创建任何资源实例；匹配成功后由 bind 依次执行还没有执行的步骤
+    static class Recorder implements UriInfoBuilder {
+        private final UriInfoBuilder builder;
+        private final List<Step> steps = new ArrayList<>();
+        private int bound;
+        private boolean cacheable = true;
+
+        Recorder(UriInfoBuilder builder) {
+            this.builder = builder;
+        }
+
+        Object bind(ResourceContext resourceContext) {
+            Object resource = null;
+            for (; bound < steps.size(); bound++) {
+                resource = steps.get(bound).bind(resourceContext, builder);
+            }
+            return resource;
+        }
+
+        // 没有通过 RouteCache.bind 绑定资源的 Resource 实现无法重放，同样不缓存
+        Optional<Route> route(ResourceRouter.ResourceMethod method) {
+            if (!cacheable || steps.isEmpty()) {
+                return Optional.empty();
+            }
+            return Optional.of(new Route(List.copyOf(steps), method));
+        }
+
+        @Override
+        public Object getLastMatchedResource() {
+            return builder.getLastMatchedResource();
+        }
+
+        @Override
+        public void addMatchedResource(Object resource) {
+            builder.addMatchedResource(resource);
+        }
+
+        @Override
+        public UriInfo createUriInfo() {
+            return builder.createUriInfo();
+        }
+
+        @Override
+        public void addMatchedPathParameters(Map<String, String> pathParameters) {
+            builder.addMatchedPathParameters(pathParameters);
+        }
+
+        @Override
+        public void addMatchedPathParameters(UriTemplate.MatchResult result) {
+            builder.addMatchedPathParameters(result);
+        }
+    }
+}
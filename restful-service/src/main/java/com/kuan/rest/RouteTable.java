@@ -0,0 +1,132 @@
+package com.kuan.rest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 编译期由 route-processor 生成的路由表（META-INF/com.kuan.rest/routes）。
+ * <p>
+ * 资源类在表里时，按表中的方法签名直接查找 Method，并用表里的 HTTP 方法、模板和媒体类型构造资源方法，
+ * 不再扫描资源类的全部方法和注解。表里找不到的类（或者表已经和类对不上时）仍然走反射。
+ */
+class RouteTable {
+    static final String ROUTES = "META-INF/com.kuan.rest/routes";
+
+    private static final Map<String, Class<?>> primitives = Map.of(
+            "boolean", boolean.class, "byte", byte.class, "short", short.class, "char", char.class,
+            "int", int.class, "long", long.class, "float", float.class, "double", double.class);
+
+    private final ClassLoader classLoader;
+    private final Map<String, String> resources = new LinkedHashMap<>();
+    private final Map<String, List<String[]>> methods = new HashMap<>();
+    private final Map<String, List<String[]>> locators = new HashMap<>();
+
+    private static class Holder {
+        private static final RouteTable routes = load(RouteTable.class.getClassLoader());
+    }
+
+    static RouteTable routes() {
+        return Holder.routes;
+    }
+
+    static RouteTable load(ClassLoader classLoader) {
+        RouteTable table = new RouteTable(classLoader);
+        try {
+            Enumeration<URL> resources = classLoader.getResources(ROUTES);
+            while (resources.hasMoreElements()) {
+                table.read(resources.nextElement());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return table;
+    }
+
+    private RouteTable(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    private void read(URL url) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                switch (fields[0]) {
+                    case "resource" -> resources.put(fields[1], fields[2]);
+                    case "method" -> methods.computeIfAbsent(fields[1], k -> new ArrayList<>()).add(fields);
+                    case "locator" -> locators.computeIfAbsent(fields[1], k -> new ArrayList<>()).add(fields);
+                    default -> {
+                    }
+                }
+            }
+        }
+    }
+
+    List<ResourceRouter.Resource> rootResources(UriHandlers.Mode mode) {
+        return resources.entrySet().stream()
+                .map(e -> (ResourceRouter.Resource) ResourceHandler.root(load(e.getKey()), e.getValue(), mode))
+                .toList();
+    }
+
+    Optional<Routes> find(Class<?> resourceClass) {
+        String name = resourceClass.getName();
+        if (!methods.containsKey(name) && !locators.containsKey(name)) {
+            return Optional.empty();
+        }
+        try {
+            List<DefaultResourceMethod> resourceMethods = new ArrayList<>();
+            for (String[] fields : methods.getOrDefault(name, List.of())) {
+                resourceMethods.add(new DefaultResourceMethod(method(resourceClass, fields[2], fields[3]), fields[4],
+                        fields[5], MediaTypes.ranges(fields[6]), MediaTypes.ranges(fields[7])));
+            }
+            List<Method> subResourceLocators = new ArrayList<>();
+            for (String[] fields : locators.getOrDefault(name, List.of())) {
+                subResourceLocators.add(method(resourceClass, fields[2], fields[3]));
+            }
+            return Optional.of(new Routes(resourceMethods, subResourceLocators));
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Method method(Class<?> resourceClass, String name, String parameters)
+            throws ReflectiveOperationException {
+        if (parameters.isEmpty()) {
+            return resourceClass.getMethod(name);
+        }
+        String[] types = parameters.split(",");
+        Class<?>[] parameterTypes = new Class<?>[types.length];
+        for (int i = 0; i < types.length; i++) {
+            parameterTypes[i] = type(types[i], resourceClass.getClassLoader());
+        }
+        return resourceClass.getMethod(name, parameterTypes);
+    }
+
+    private static Class<?> type(String name, ClassLoader classLoader) throws ClassNotFoundException {
+        if (name.endsWith("[]")) {
+            Class<?> component = type(name.substring(0, name.length() - 2), classLoader);
+            return Array.newInstance(component, 0).getClass();
+        }
+        Class<?> primitive = primitives.get(name);
+        return primitive != null ? primitive : Class.forName(name, false, classLoader);
+    }
+
+    private Class<?> load(String name) {
+        try {
+            return Class.forName(name, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    record Routes(List<DefaultResourceMethod> methods, List<Method> locators) {
+    }
+}
@@ -4,12 +4,24 @@ import com.tdd.di.Context;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.ext.ParamConverterProvider;
 import jakarta.ws.rs.ext.Providers;
 
+import java.util.List;
+
 public interface Runtime {
 
     Providers getProviders();
 
+    // 运行期间注册了新的 provider 之后调用 listener，ResourceServlet 借此让它缓存的查找结果作废；provider 固定不变时不需要实现
+    default void addProvidersListener(Runnable listener) {
+    }
+
+    // 资源方法参数的转换器，排在基本类型之后、String 构造函数和 valueOf / fromString 之前
+    default List<ParamConverterProvider> getParamConverterProviders() {
+        return List.of();
+    }
+
     ResourceContext createResourceContext(HttpServletRequest request, HttpServletResponse response);
 
     UriInfoBuilder createUriInfoBuilder(HttpServletRequest request);
@@ -0,0 +1,27 @@
+package com.kuan.rest;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * 用来表示“没有找到”一类控制流的 WebApplicationException，不填充调用栈。
+ * <p>
+ * 比如子资源定位器找不到对应的子资源时抛出 new StacklessWebApplicationException(404)：
+ * 204 / 404 / 405 / 406 / 415 使用预先构造好的响应，不经过 RuntimeDelegate。
+ * 需要调用栈排查问题的场景仍然应该使用 WebApplicationException。
+ */
+public class StacklessWebApplicationException extends WebApplicationException {
+
+    public StacklessWebApplicationException(int status) {
+        this(Responses.status(status));
+    }
+
+    public StacklessWebApplicationException(Response response) {
+        super("HTTP " + response.getStatus() + " " + response.getStatusInfo().getReasonPhrase(), null, response);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,164 @@
+package com.kuan.rest;
+
+import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Providers;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.BaseStream;
+
+/**
+ * 边生成边写出的响应实体：StreamingOutput、Stream&lt;T&gt; 和 Iterator&lt;T&gt;。
+ * <p>
+ * 这些实体不计算长度、不经过 EntityBuffer，直接写到响应的输出流里，容器按 chunked 编码发送，
+ * 堆上最多只有一个元素和容器自己的输出缓冲区。
+ * Stream 和 Iterator 的每个元素用元素类型的 MessageBodyWriter 写出，元素之间怎么分隔由响应的媒体类型决定（见 {@link Framing}）；
+ * 每写出 FLUSH_ELEMENTS 个元素主动 flush 一次，为 0 时只在容器的输出缓冲区满了时发送。
+ */
+final class StreamingEntities {
+    static final int FLUSH_ELEMENTS = Integer.getInteger("kuan.rest.stream-flush-elements", 0);
+
+    private StreamingEntities() {
+    }
+
+    static boolean isStreaming(Object entity) {
+        return entity instanceof StreamingOutput || entity instanceof BaseStream<?, ?> || entity instanceof Iterator<?>;
+    }
+
+    // HEAD 请求不会写出实体，也要关闭 Stream 释放它占用的资源（比如数据库游标）
+    static void close(Object entity) {
+        if (entity instanceof BaseStream<?, ?> stream) {
+            stream.close();
+        }
+    }
+
+    static void write(Providers providers, OutboundResponse response, GenericEntity<?> entity, OutputStream output)
+            throws IOException {
+        // MessageBodyWriter 不应该关闭容器的输出流
+        OutputStream stream = new FilterOutputStream(output) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        Object value = entity.getEntity();
+        try {
+            if (value instanceof StreamingOutput streaming) {
+                streaming.write(stream);
+                stream.flush();
+                return;
+            }
+            Iterator<?> iterator = value instanceof BaseStream<?, ?> baseStream ? baseStream.iterator() : (Iterator<?>) value;
+            write(providers, response, elementType(entity.getType()), iterator, stream);
+        } finally {
+            close(value);
+        }
+    }
+
+    private static void write(Providers providers, OutboundResponse response, Type elementType, Iterator<?> elements,
+                              OutputStream output) throws IOException {
+        Framing framing = Framing.of(response.getMediaType());
+        Class<?> lastType = null;
+        Type genericType = null;
+        MessageBodyWriter writer = null;
+        int count = 0;
+        output.write(framing.open);
+        while (elements.hasNext()) {
+            Object element = elements.next();
+            if (count > 0) {
+                output.write(framing.delimiter);
+            }
+            if (element == null) {
+                output.write(framing.nullValue);
+            } else {
+                // 元素类型不变时沿用上一次找到的 MessageBodyWriter
+                if (element.getClass() != lastType) {
+                    lastType = element.getClass();
+                    genericType = elementType != null && rawType(elementType).isInstance(element) ? elementType : lastType;
+                    writer = providers.getMessageBodyWriter(lastType, genericType, response.getAnnotations(),
+                            response.getMediaType());
+                }
+                writer.writeTo(element, lastType, genericType, response.getAnnotations(), response.getMediaType(),
+                        response.getHeaders(), output);
+            }
+            output.write(framing.terminator);
+            count++;
+            if (FLUSH_ELEMENTS > 0 && count % FLUSH_ELEMENTS == 0) {
+                output.flush();
+            }
+        }
+        output.write(framing.close);
+        output.flush();
+    }
+
+    // Stream<T> / Iterator<T> 的 T，无法确定时返回 null，按元素的实际类型写出
+    private static Type elementType(Type type) {
+        if (type instanceof ParameterizedType parameterized) {
+            Type element = parameterized.getActualTypeArguments()[0];
+            if (element instanceof Class<?> || element instanceof ParameterizedType) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 元素之间的分隔方式：
+     * application/json 和 +json 写成一个 JSON 数组，null 元素写成 null；
+     * application/x-ndjson、application/jsonl 每个元素一行（NDJSON），null 元素同样写成 null；
+     * 其他 text/* 每个元素一行，null 元素是空行；其余媒体类型（比如二进制）直接首尾相接，null 元素什么也不写。
+     */
+    enum Framing {
+        JSON_ARRAY("[", ",", "", "]", "null"),
+        JSON_LINES("", "", "\n", "", "null"),
+        TEXT_LINES("", "", "\n", "", ""),
+        NONE("", "", "", "", "");
+
+        private final byte[] open;
+        private final byte[] delimiter;
+        private final byte[] terminator;
+        private final byte[] close;
+        private final byte[] nullValue;
+
+        Framing(String open, String delimiter, String terminator, String close, String nullValue) {
+            this.open = open.getBytes(StandardCharsets.US_ASCII);
+            this.delimiter = delimiter.getBytes(StandardCharsets.US_ASCII);
+            this.terminator = terminator.getBytes(StandardCharsets.US_ASCII);
+            this.close = close.getBytes(StandardCharsets.US_ASCII);
+            this.nullValue = nullValue.getBytes(StandardCharsets.US_ASCII);
+        }
+
+        static Framing of(MediaType mediaType) {
+            if (mediaType == null) {
+                return NONE;
+            }
+            String subtype = mediaType.getSubtype().toLowerCase(Locale.ROOT);
+            if (subtype.equals("x-ndjson") || subtype.equals("ndjson") || subtype.equals("jsonl")
+                    || subtype.equals("x-jsonlines")) {
+                return JSON_LINES;
+            }
+            if (subtype.equals("json") || subtype.endsWith("+json")) {
+                return JSON_ARRAY;
+            }
+            return mediaType.getType().equalsIgnoreCase("text") ? TEXT_LINES : NONE;
+        }
+    }
+
+    private static Class<?> rawType(Type type) {
+        return type instanceof ParameterizedType parameterized ? (Class<?>) parameterized.getRawType() : (Class<?>) type;
+    }
+}
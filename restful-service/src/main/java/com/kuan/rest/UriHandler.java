@@ -18,27 +18,77 @@ class UriHandlers {
     public static <T extends UriHandler, R> Optional<R>
     mapMatched(String path, List<T> handlers,
                BiFunction<Optional<UriTemplate.MatchResult>, T, Optional<R>> mapper) {
-        return matched(path, handlers, r -> true).flatMap(r -> mapper.apply(r.matched(), r.handler()));
+        return mapMatched(path, linear(handlers), mapper);
+    }
+
+    public static <T extends UriHandler, R> Optional<R>
+    mapMatched(String path, Matcher<T> matcher,
+               BiFunction<Optional<UriTemplate.MatchResult>, T, Optional<R>> mapper) {
+        return matcher.matched(path, r -> true).flatMap(r -> mapper.apply(r.matched(), r.handler()));
     }
 
     public static <T extends UriHandler> Optional<T> match(String path, List<T> handlers,
                                                            Function<UriTemplate.MatchResult, Boolean> matchFunction) {
-        return matched(path, handlers, matchFunction).map(Result::handler);
+        return linear(handlers).matched(path, matchFunction).map(Result::handler);
     }
 
     public static <T extends UriHandler> Optional<T> match(String path, List<T> handlers) {
         return match(path, handlers, r -> true);
     }
 
-    private static <T extends UriHandler> Optional<Result<T>>
-    matched(String path, List<T> handlers, Function<UriTemplate.MatchResult, Boolean> matchFunction) {
-        return handlers.stream()
-                .map(m -> new Result<>(m.getUriTemplate().match(path), m, matchFunction))
-                .filter(Result::isMatched)
-                .sorted().findFirst();
+    static <T extends UriHandler> Matcher<T> linear(List<T> handlers) {
+        return (path, matchFunction) -> {
+            Result<T> best = null;
+            for (T handler : handlers) {
+                Optional<UriTemplate.MatchResult> matched = handler.getUriTemplate().match(path);
+                if (matched.map(matchFunction).orElse(false)) {
+                    Result<T> result = new Result<>(matched, handler, matchFunction);
+                    if (best == null || result.compareTo(best) < 0) {
+                        best = result;
+                    }
+                }
+            }
+            return Optional.ofNullable(best);
+        };
+    }
+
+    /**
+     * 在一组 UriHandler 中找出与 path 匹配、且优先级最高的那一个。
+     * 优先级以 UriTemplate.MatchResult 的 compareTo 为准，优先级相同时取列表中靠前的。
+     */
+    interface Matcher<T extends UriHandler> {
+        Optional<Result<T>> matched(String path, Function<UriTemplate.MatchResult, Boolean> matchFunction);
+
+        // 要求 path 被模板完整匹配，没有 remaining
+        default Optional<Result<T>> fullyMatched(String path) {
+            return matched(path, r -> r.getRemaining() == null);
+        }
+    }
+
+    enum Mode {
+        LINEAR {
+            @Override
+            <T extends UriHandler> Matcher<T> compile(List<T> handlers) {
+                return linear(handlers);
+            }
+        },
+        TRIE {
+            @Override
+            <T extends UriHandler> Matcher<T> compile(List<T> handlers) {
+                return UriTemplateTrie.compile(handlers);
+            }
+        },
+        COMBINED {
+            @Override
+            <T extends UriHandler> Matcher<T> compile(List<T> handlers) {
+                return UriTemplateAutomaton.compile(handlers);
+            }
+        };
+
+        abstract <T extends UriHandler> Matcher<T> compile(List<T> handlers);
     }
 
-    private record Result<T extends UriHandler>
+    record Result<T extends UriHandler>
             (Optional<UriTemplate.MatchResult> matched, T handler,
              Function<UriTemplate.MatchResult, Boolean> matchFunction) implements Comparable<Result<T>> {
 
@@ -51,4 +101,4 @@ class UriHandlers {
             return matched.flatMap(x -> o.matched.map(x::compareTo)).orElse(0);
         }
     }
-}
\ No newline at end of file
+}
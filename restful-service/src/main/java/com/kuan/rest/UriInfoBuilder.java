@@ -14,4 +14,9 @@ interface UriInfoBuilder {
 
     void addMatchedPathParameters(Map<String, String> pathParameters);
 
+    // 路径参数可以推迟到创建 UriInfo 时才从匹配结果里取出
+    default void addMatchedPathParameters(UriTemplate.MatchResult result) {
+        addMatchedPathParameters(result.getMatchedPathParameters());
+    }
+
 }
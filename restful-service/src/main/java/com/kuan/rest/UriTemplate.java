@@ -30,10 +30,14 @@ class PathUriTemplate implements UriTemplate {
     private static final String defaultVariablePattern = "([^/]+?)";
 
 
+    private final String template;
+    private final String regex;
     private final Pattern pattern;
     private final List<String> variables = new ArrayList<>();
     private final int variableGroupStartFrom;
+    private final int regexGroupCount;
     private int specificPatternCount = 0;
+    private int literalCount;
 
 
     private static String group(String pattern) {
@@ -41,8 +45,12 @@ class PathUriTemplate implements UriTemplate {
     }
 
     public PathUriTemplate(String template) {
-        pattern = Pattern.compile(group(variable(template)) + "(/.*)?");
+        this.template = template;
+        this.literalCount = template.length();
+        regex = group(variable(template));
+        pattern = Pattern.compile(regex + "(/.*)?");
         variableGroupStartFrom = 2;
+        regexGroupCount = pattern.matcher("").groupCount() - 1;
     }
 
     private String variable(String template) {
@@ -53,6 +61,7 @@ class PathUriTemplate implements UriTemplate {
                 throw new IllegalArgumentException("duplicate variable " + variableName);
             }
             variables.add(variableName);
+            literalCount -= result.group().length();
 
             if (pattern != null) {
                 specificPatternCount++;
@@ -62,46 +71,111 @@ class PathUriTemplate implements UriTemplate {
         });
     }
 
+    String getTemplate() {
+        return template;
+    }
+
+    // 不含 remaining 部分的正则，以及其中的分组数，供 UriTemplateAutomaton 拼接成一个整体的正则
+    String getRegex() {
+        return regex;
+    }
+
+    int getRegexGroupCount() {
+        return regexGroupCount;
+    }
+
+    // 模板的优先级在编译时就已确定：匹配成功时，匹配到的字面量长度就是模板中除变量外的字符数
+    int comparePrecedence(PathUriTemplate o) {
+        if (literalCount != o.literalCount) {
+            return literalCount > o.literalCount ? -1 : 1;
+        }
+        if (variables.size() != o.variables.size()) {
+            return variables.size() > o.variables.size() ? -1 : 1;
+        }
+        return Integer.compare(o.specificPatternCount, specificPatternCount);
+    }
+
     @Override
     public Optional<MatchResult> match(String path) {
         Matcher matcher = pattern.matcher(path);
         if (!matcher.matches()) {
             return Optional.empty();
         }
-        return Optional.of(new PathMatchResult(matcher));
+        return Optional.of(new PathMatchResult(path, matcher, 0, true));
     }
 
+    MatchResult match(String path, java.util.regex.MatchResult matcher, int base, boolean remaining) {
+        return new PathMatchResult(path, matcher, base, remaining);
+    }
+
+    // 只记录各分组在 path 中的起止位置，匹配到的字符串和路径参数在用到时才创建
     class PathMatchResult implements MatchResult {
-        private final int specificPatternCount;
-        private int matchLiteralCount;
-        private final Matcher matcher;
-        private final int count;
-        private final Map<String, String> parameters = new HashMap<>();
-
-        public PathMatchResult(Matcher matcher) {
-            this.matcher = matcher;
-            this.count = matcher.groupCount();
-            this.matchLiteralCount = matcher.group(variableNameGroup).length();
-            this.specificPatternCount = PathUriTemplate.this.specificPatternCount;
+        private final String path;
+        private final int[] offsets;
+        private final int matchLiteralCount;
+        private Map<String, String> parameters;
+
+        public PathMatchResult(String path, java.util.regex.MatchResult matcher, int base, boolean remaining) {
+            this.path = path;
+            this.offsets = new int[(variables.size() + 2) * 2];
 
+            offset(0, matcher, base + variableNameGroup);
+            int literalCount = length(0);
             for (int i = 0; i < variables.size(); i++) {
-                parameters.put(variables.get(i), matcher.group(variableGroupStartFrom + i));
-                matchLiteralCount -= matcher.group(variableGroupStartFrom + i).length();
+                offset(i + 1, matcher, base + variableGroupStartFrom + i);
+                literalCount -= length(i + 1);
             }
+            this.matchLiteralCount = literalCount;
+
+            if (remaining) {
+                offset(variables.size() + 1, matcher, base + regexGroupCount + 1);
+            } else {
+                offsets[offsets.length - 2] = -1;
+                offsets[offsets.length - 1] = -1;
+            }
+        }
+
+        private void offset(int index, java.util.regex.MatchResult matcher, int group) {
+            offsets[index * 2] = matcher.start(group);
+            offsets[index * 2 + 1] = matcher.end(group);
+        }
+
+        private int length(int index) {
+            return offsets[index * 2 + 1] - offsets[index * 2];
+        }
+
+        private String group(int index) {
+            int start = offsets[index * 2];
+            return start < 0 ? null : path.substring(start, offsets[index * 2 + 1]);
+        }
+
+        private int variableCount() {
+            return variables.size();
+        }
+
+        private int specificPatternCount() {
+            return specificPatternCount;
         }
 
         @Override
         public String getMatched() {
-            return matcher.group(variableNameGroup);
+            return group(0);
         }
 
         @Override
         public String getRemaining() {
-            return matcher.group(count);
+            return group(variables.size() + 1);
         }
 
         @Override
         public Map<String, String> getMatchedPathParameters() {
+            if (parameters == null) {
+                Map<String, String> parameters = new HashMap<>();
+                for (int i = 0; i < variables.size(); i++) {
+                    parameters.put(variables.get(i), group(i + 1));
+                }
+                this.parameters = parameters;
+            }
             return parameters;
         }
 
@@ -114,16 +188,16 @@ class PathUriTemplate implements UriTemplate {
             if (this.matchLiteralCount < result.matchLiteralCount) {
                 return 1;
             }
-            if (this.parameters.size() > result.parameters.size()) {
+            if (this.variableCount() > result.variableCount()) {
                 return -1;
             }
-            if (this.parameters.size() < result.parameters.size()) {
+            if (this.variableCount() < result.variableCount()) {
                 return 1;
             }
-            if (this.specificPatternCount > result.specificPatternCount) {
+            if (this.specificPatternCount() > result.specificPatternCount()) {
                 return -1;
             }
-            if (this.specificPatternCount < result.specificPatternCount) {
+            if (this.specificPatternCount() < result.specificPatternCount()) {
                 return 1;
             }
             return 0;
@@ -0,0 +1,180 @@
+package com.kuan.rest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 把同一层级的所有 PathUriTemplate 合并成一个正则，请求路径只需扫描一次。
+ * <p>
+ * 模板按优先级（稳定）排序后依次作为分支拼接，正则的分支是有序选择的，第一个能完整匹配的分支就是优先级最高的模板。
+ * 匹配结果直接由该分支在整体正则中的分组偏移构造，不需要再执行模板自己的正则。
+ * <p>
+ * java.util.regex 仍然逐个尝试分支，所以先按第一个 segment 分组：第一个 segment 是字面量的模板按字面量放进各自的组，
+ * 其余模板（变量、自定义正则、空模板）放进每一个组。请求只匹配自己第一个 segment 对应的组，
+ * 分支数取决于同一个前缀下的模板数，而不是这一层的模板总数。
+ */
+class UriTemplateAutomaton<T extends UriHandler> implements UriHandlers.Matcher<T> {
+
+    private final List<T> handlers;
+    private final List<PathUriTemplate> templates;
+    private final Pattern prefix;
+    private final int[] prefixBases;
+    private final Pattern fully;
+    private final int[] fullyBases;
+
+    static <T extends UriHandler> UriHandlers.Matcher<T> compile(List<T> handlers) {
+        if (handlers.isEmpty() || !handlers.stream().allMatch(h -> h.getUriTemplate() instanceof PathUriTemplate)) {
+            return UriHandlers.linear(handlers);
+        }
+        Map<String, List<T>> groups = new HashMap<>();
+        for (T handler : handlers) {
+            String segment = firstLiteralSegment(template(handler).getTemplate());
+            if (segment != null) {
+                groups.putIfAbsent(segment, new ArrayList<>());
+            }
+        }
+        if (groups.size() <= 1) {
+            return new UriTemplateAutomaton<>(handlers);
+        }
+        // 组内保持原来的相对顺序，优先级相同时的选择和不分组时一致
+        List<T> others = new ArrayList<>();
+        for (T handler : handlers) {
+            String segment = firstLiteralSegment(template(handler).getTemplate());
+            if (segment != null) {
+                groups.get(segment).add(handler);
+            } else {
+                others.add(handler);
+                groups.values().forEach(group -> group.add(handler));
+            }
+        }
+        Map<String, UriHandlers.Matcher<T>> matchers = new HashMap<>();
+        groups.forEach((segment, group) -> matchers.put(segment, new UriTemplateAutomaton<>(group)));
+        UriHandlers.Matcher<T> fallback = others.isEmpty() ? null : new UriTemplateAutomaton<>(others);
+        return new Grouped<>(matchers, fallback);
+    }
+
+    // 模板的第一个 segment 是字面量时返回它，否则返回 null
+    private static String firstLiteralSegment(String template) {
+        if (template.length() < 2 || template.charAt(0) != '/') {
+            return null;
+        }
+        String segment = template.substring(1, UriTemplateTrie.segmentEnd(template, 1));
+        return !segment.isEmpty() && UriTemplateTrie.kindOf(segment) == UriTemplateTrie.Kind.LITERAL ? segment : null;
+    }
+
+    private static String firstSegment(String path) {
+        if (path.isEmpty() || path.charAt(0) != '/') {
+            return null;
+        }
+        int end = path.indexOf('/', 1);
+        return path.substring(1, end < 0 ? path.length() : end);
+    }
+
+    private record Grouped<T extends UriHandler>(Map<String, UriHandlers.Matcher<T>> groups,
+                                                 UriHandlers.Matcher<T> fallback) implements UriHandlers.Matcher<T> {
+        @Override
+        public Optional<UriHandlers.Result<T>> matched(String path,
+                                                       Function<UriTemplate.MatchResult, Boolean> matchFunction) {
+            UriHandlers.Matcher<T> matcher = matcher(path);
+            return matcher == null ? Optional.empty() : matcher.matched(path, matchFunction);
+        }
+
+        @Override
+        public Optional<UriHandlers.Result<T>> fullyMatched(String path) {
+            UriHandlers.Matcher<T> matcher = matcher(path);
+            return matcher == null ? Optional.empty() : matcher.fullyMatched(path);
+        }
+
+        private UriHandlers.Matcher<T> matcher(String path) {
+            String segment = firstSegment(path);
+            UriHandlers.Matcher<T> matcher = segment == null ? null : groups.get(segment);
+            return matcher != null ? matcher : fallback;
+        }
+    }
+
+    private UriTemplateAutomaton(List<T> handlers) {
+        this.handlers = IntStream.range(0, handlers.size()).boxed()
+                .sorted(Comparator.comparing(i -> template(handlers.get(i)), PathUriTemplate::comparePrecedence))
+                .map(handlers::get)
+                .toList();
+        this.templates = this.handlers.stream().map(UriTemplateAutomaton::template).toList();
+
+        this.prefixBases = new int[templates.size()];
+        this.prefix = combine(prefixBases, "(/.*)?", 1);
+        this.fullyBases = new int[templates.size()];
+        this.fully = combine(fullyBases, "", 0);
+    }
+
+    private static PathUriTemplate template(UriHandler handler) {
+        return (PathUriTemplate) handler.getUriTemplate();
+    }
+
+    private Pattern combine(int[] bases, String remaining, int remainingGroupCount) {
+        int base = 0;
+        for (int i = 0; i < templates.size(); i++) {
+            bases[i] = base;
+            base += templates.get(i).getRegexGroupCount() + remainingGroupCount;
+        }
+        return Pattern.compile(templates.stream()
+                .map(t -> "(?:" + t.getRegex() + remaining + ")")
+                .collect(Collectors.joining("|")));
+    }
+
+    @Override
+    public Optional<UriHandlers.Result<T>> matched(String path,
+                                                   Function<UriTemplate.MatchResult, Boolean> matchFunction) {
+        Matcher matcher = prefix.matcher(path);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        int matched = matchedBranch(matcher, prefixBases);
+        UriHandlers.Result<T> result = result(matched,
+                templates.get(matched).match(path, matcher, prefixBases[matched], true), matchFunction);
+        if (result.isMatched()) {
+            return Optional.of(result);
+        }
+        // 优先级最高的模板被 matchFunction 拒绝时，按优先级顺序继续尝试剩下的模板
+        for (int i = matched + 1; i < handlers.size(); i++) {
+            Optional<UriTemplate.MatchResult> next = templates.get(i).match(path);
+            if (next.map(matchFunction).orElse(false)) {
+                return Optional.of(new UriHandlers.Result<>(next, handlers.get(i), matchFunction));
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<UriHandlers.Result<T>> fullyMatched(String path) {
+        Matcher matcher = fully.matcher(path);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        int matched = matchedBranch(matcher, fullyBases);
+        return Optional.of(result(matched, templates.get(matched).match(path, matcher, fullyBases[matched], false),
+                r -> r.getRemaining() == null));
+    }
+
+    private UriHandlers.Result<T> result(int index, UriTemplate.MatchResult matched,
+                                         Function<UriTemplate.MatchResult, Boolean> matchFunction) {
+        return new UriHandlers.Result<>(Optional.of(matched), handlers.get(index), matchFunction);
+    }
+
+    // 每个分支的第一个分组是整个模板，只有匹配成功的分支，这个分组才会有起始位置
+    private static int matchedBranch(Matcher matcher, int[] bases) {
+        for (int i = 0; i < bases.length; i++) {
+            if (matcher.start(bases[i] + 1) >= 0) {
+                return i;
+            }
+        }
+        throw new IllegalStateException();
+    }
+}
@@ -0,0 +1,156 @@
+package com.kuan.rest;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * 启动时把一组 PathUriTemplate 按 path segment 编译成前缀树，查找时只需沿着请求路径的 segment 走一遍。
+ * <p>
+ * 字面量 segment 放在 hash 子节点里；只含默认变量的 segment 走通配边，匹配任意非空 segment；
+ * 带自定义正则的 segment 可能跨越多个 segment，模板挂在该节点上，到达即视为候选。
+ * 前缀树只负责筛选候选，最终仍由模板自身的正则确认，优先级与 UriHandlers.linear 完全一致。
+ */
+class UriTemplateTrie<T extends UriHandler> implements UriHandlers.Matcher<T> {
+
+    private static final String REGEX_CHARACTERS = "\\.[]{}()*+?^$|";
+
+    private final List<T> handlers;
+    private final Node root = new Node();
+
+    static <T extends UriHandler> UriHandlers.Matcher<T> compile(List<T> handlers) {
+        if (!handlers.stream().allMatch(h -> h.getUriTemplate() instanceof PathUriTemplate)) {
+            return UriHandlers.linear(handlers);
+        }
+        return new UriTemplateTrie<>(handlers);
+    }
+
+    private UriTemplateTrie(List<T> handlers) {
+        this.handlers = List.copyOf(handlers);
+        for (int i = 0; i < this.handlers.size(); i++) {
+            insert(i, ((PathUriTemplate) this.handlers.get(i).getUriTemplate()).getTemplate());
+        }
+    }
+
+    @Override
+    public Optional<UriHandlers.Result<T>> matched(String path,
+                                                   Function<UriTemplate.MatchResult, Boolean> matchFunction) {
+        BitSet candidates = new BitSet(handlers.size());
+        collect(root, path, 0, candidates);
+
+        UriHandlers.Result<T> best = null;
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            T handler = handlers.get(i);
+            UriHandlers.Result<T> result =
+                    new UriHandlers.Result<>(handler.getUriTemplate().match(path), handler, matchFunction);
+            if (result.isMatched() && (best == null || result.compareTo(best) < 0)) {
+                best = result;
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    private void collect(Node node, String path, int from, BitSet candidates) {
+        node.terminals.forEach(candidates::set);
+        node.patterns.forEach(candidates::set);
+
+        if (from >= path.length() || path.charAt(from) != '/') {
+            return;
+        }
+        int end = path.indexOf('/', from + 1);
+        if (end < 0) {
+            end = path.length();
+        }
+        String segment = path.substring(from + 1, end);
+
+        Node literal = node.literals.get(segment);
+        if (literal != null) {
+            collect(literal, path, end, candidates);
+        }
+        if (node.variable != null && !segment.isEmpty()) {
+            collect(node.variable, path, end, candidates);
+        }
+    }
+
+    private void insert(int index, String template) {
+        if (!template.isEmpty() && template.charAt(0) != '/') {
+            root.patterns.add(index);
+            return;
+        }
+
+        Node node = root;
+        int start = 0;
+        while (start < template.length()) {
+            int end = segmentEnd(template, start + 1);
+            String segment = template.substring(start + 1, end);
+            switch (kindOf(segment)) {
+                case LITERAL -> node = node.literals.computeIfAbsent(segment, s -> new Node());
+                case VARIABLE -> node = node.variable();
+                case PATTERN -> {
+                    node.patterns.add(index);
+                    return;
+                }
+            }
+            start = end;
+        }
+        node.terminals.add(index);
+    }
+
+    static int segmentEnd(String template, int from) {
+        int depth = 0;
+        for (int i = from; i < template.length(); i++) {
+            char c = template.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+            } else if (c == '/' && depth == 0) {
+                return i;
+            }
+        }
+        return template.length();
+    }
+
+    static Kind kindOf(String segment) {
+        boolean variable = false;
+        int depth = 0;
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c == '{') {
+                depth++;
+                variable = true;
+            } else if (c == '}') {
+                depth--;
+            } else if (depth > 0) {
+                if (c == ':') {
+                    return Kind.PATTERN;
+                }
+            } else if (REGEX_CHARACTERS.indexOf(c) >= 0) {
+                return Kind.PATTERN;
+            }
+        }
+        return variable ? Kind.VARIABLE : Kind.LITERAL;
+    }
+
+    enum Kind {
+        LITERAL, VARIABLE, PATTERN
+    }
+
+    private static class Node {
+        private final Map<String, Node> literals = new HashMap<>();
+        private final List<Integer> terminals = new ArrayList<>();
+        private final List<Integer> patterns = new ArrayList<>();
+        private Node variable;
+
+        private Node variable() {
+            if (variable == null) {
+                variable = new Node();
+            }
+            return variable;
+        }
+    }
+}
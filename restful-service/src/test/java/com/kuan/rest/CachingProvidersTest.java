@@ -0,0 +1,105 @@
+package com.kuan.rest;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.ext.ContextResolver;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Providers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Annotation;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class CachingProvidersTest {
+    private Providers providers;
+    private MessageBodyWriter<String> writer;
+    private CachingProviders cache;
+
+    @BeforeEach
+    public void before() {
+        providers = mock(Providers.class);
+        writer = mock(MessageBodyWriter.class);
+        when(providers.getMessageBodyWriter(eq(String.class), eq(String.class), any(), eq(MediaType.TEXT_PLAIN_TYPE)))
+                .thenReturn(writer);
+        cache = new CachingProviders(providers, 2);
+    }
+
+    @Test
+    public void should_look_up_message_body_writer_once() {
+        assertSame(writer, cache.getMessageBodyWriter(String.class, String.class, new Annotation[0],
+                MediaType.TEXT_PLAIN_TYPE));
+        assertSame(writer, cache.getMessageBodyWriter(String.class, String.class, new Annotation[0],
+                MediaType.TEXT_PLAIN_TYPE));
+
+        verify(providers, times(1)).getMessageBodyWriter(any(), any(), any(), any());
+    }
+
+    @Test
+    public void should_look_up_again_for_different_media_type() {
+        cache.getMessageBodyWriter(String.class, String.class, new Annotation[0], MediaType.TEXT_PLAIN_TYPE);
+
+        assertNull(cache.getMessageBodyWriter(String.class, String.class, new Annotation[0],
+                MediaType.APPLICATION_JSON_TYPE));
+
+        verify(providers, times(2)).getMessageBodyWriter(any(), any(), any(), any());
+    }
+
+    @Test
+    public void should_cache_missing_provider() {
+        cache.getMessageBodyReader(String.class, String.class, new Annotation[0], MediaType.TEXT_PLAIN_TYPE);
+        cache.getMessageBodyReader(String.class, String.class, new Annotation[0], MediaType.TEXT_PLAIN_TYPE);
+
+        verify(providers, times(1)).getMessageBodyReader(any(), any(), any(), any());
+    }
+
+    @Test
+    public void should_cache_reader_and_context_resolver_separately_from_writer() {
+        MessageBodyReader<String> reader = mock(MessageBodyReader.class);
+        ContextResolver<String> resolver = mock(ContextResolver.class);
+        when(providers.getMessageBodyReader(eq(String.class), eq(String.class), any(), eq(MediaType.TEXT_PLAIN_TYPE)))
+                .thenReturn(reader);
+        when(providers.getContextResolver(String.class, MediaType.TEXT_PLAIN_TYPE)).thenReturn(resolver);
+
+        assertSame(writer, cache.getMessageBodyWriter(String.class, String.class, new Annotation[0],
+                MediaType.TEXT_PLAIN_TYPE));
+        assertSame(reader, cache.getMessageBodyReader(String.class, String.class, new Annotation[0],
+                MediaType.TEXT_PLAIN_TYPE));
+        assertSame(resolver, cache.getContextResolver(String.class, MediaType.TEXT_PLAIN_TYPE));
+        assertSame(resolver, cache.getContextResolver(String.class, MediaType.TEXT_PLAIN_TYPE));
+
+        verify(providers, times(1)).getContextResolver(any(), any());
+    }
+
+    @Test
+    public void should_look_up_again_after_invalidated() {
+        cache.getMessageBodyWriter(String.class, String.class, new Annotation[0], MediaType.TEXT_PLAIN_TYPE);
+
+        cache.invalidate();
+        cache.getMessageBodyWriter(String.class, String.class, new Annotation[0], MediaType.TEXT_PLAIN_TYPE);
+
+        verify(providers, times(2)).getMessageBodyWriter(any(), any(), any(), any());
+    }
+
+    @Test
+    public void should_evict_when_full() {
+        cache.getMessageBodyWriter(String.class, String.class, new Annotation[0], MediaType.TEXT_PLAIN_TYPE);
+        cache.getMessageBodyWriter(String.class, String.class, new Annotation[0], MediaType.TEXT_HTML_TYPE);
+        cache.getMessageBodyWriter(String.class, String.class, new Annotation[0], MediaType.APPLICATION_JSON_TYPE);
+
+        cache.getMessageBodyWriter(String.class, String.class, new Annotation[0], MediaType.TEXT_PLAIN_TYPE);
+
+        verify(providers, times(2)).getMessageBodyWriter(eq(String.class), eq(String.class), any(),
+                eq(MediaType.TEXT_PLAIN_TYPE));
+    }
+
+    @Test
+    public void should_not_wrap_twice() {
+        assertSame(cache, CachingProviders.of(cache));
+        assertNull(CachingProviders.of(null));
+    }
+}
@@ -1,11 +1,20 @@
 package com.kuan.rest;
 
+import jakarta.ws.rs.ext.ParamConverter;
+import jakarta.ws.rs.ext.ParamConverterProvider;
 import org.junit.jupiter.api.Test;
 
+import java.lang.annotation.Annotation;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
 import java.math.BigDecimal;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 /**
  * @Author: qxkk
@@ -15,23 +24,156 @@ public class ConverterTest {
 
     @Test
     public void should_convert_via_converter_constructor() {
-        assertEquals(Optional.of(new BigDecimal("12345")), ConstructorConverter.convert(BigDecimal.class, "12345"));
+        assertEquals(new BigDecimal("12345"), MethodInvoker.converter(BigDecimal.class).fromString(List.of("12345")));
     }
 
     @Test
-    public void should_not_convert_if_no_converter_constructor() {
-        assertEquals(Optional.empty(), ConstructorConverter.convert(NoConverter.class, "12345"));
+    public void should_not_find_converter_constructor_if_none() {
+        assertNull(ConstructorConverter.find(NoConverter.class));
     }
 
     @Test
     public void should_convert_via_converter_factory() {
-        assertEquals(Optional.of(Converter.Factory), FactoryConverter.convert(Converter.class, "Factory"));
+        assertEquals(Converter.Factory, MethodInvoker.converter(Converter.class).fromString(List.of("Factory")));
     }
 
+    @Test
+    public void should_not_find_converter_factory_if_none() {
+        assertNull(FactoryConverter.find(NoConverter.class));
+    }
+
+    @Test
+    public void should_convert_enum_via_from_string_before_value_of() {
+        assertEquals(Level.High, MethodInvoker.converter(Level.class).fromString(List.of("high")));
+    }
+
+    @Test
+    public void should_fall_back_to_factory_if_constructor_failed() {
+        assertEquals(new Fallback("7"), MethodInvoker.converter(Fallback.class).fromString(List.of("factory")));
+        assertEquals(new Fallback("12345"), MethodInvoker.converter(Fallback.class).fromString(List.of("12345")));
+    }
+
+    @Test
+    public void should_return_null_if_conversion_failed() {
+        assertNull(MethodInvoker.converter(BigDecimal.class).fromString(List.of("not a number")));
+        assertNull(MethodInvoker.converter(NoConverter.class).fromString(List.of("12345")));
+    }
+
+    @Test
+    public void should_not_allocate_when_converting_with_resolved_converter() {
+        MethodInvoker.ValueConverter<Object> converter = MethodInvoker.converter(Level.class);
+        List<String> values = List.of("high");
+        for (int i = 0; i < 10_000; i++) {
+            converter.fromString(values);
+        }
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 1_000; i++) {
+            converter.fromString(values);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        // 每次转换分配一个 Optional 就至少 16_000 字节
+        assertTrue(allocated < 8_000, allocated + " bytes allocated");
+    }
+
+    @Test
+    public void should_convert_via_param_converter_provider_before_constructor() {
+        ConverterRegistry registry = new ConverterRegistry();
+        registry.use(() -> List.of(new FallbackProvider("provided")));
+
+        assertEquals(new Fallback("provided"), registry.converter(Fallback.class).fromString(List.of("12345")));
+    }
+
+    @Test
+    public void should_resolve_converter_once_per_type() {
+        ConverterRegistry registry = new ConverterRegistry();
+        FallbackProvider provider = spy(new FallbackProvider("provided"));
+        registry.use(() -> List.of(provider));
+        MethodInvoker.ValueConverter<Object> converter = registry.converter(Fallback.class);
+
+        converter.fromString(List.of("1"));
+        converter.fromString(List.of("2"));
+        registry.converter(Fallback.class).fromString(List.of("3"));
+
+        verify(provider, times(1)).getConverter(eq(Fallback.class), any(), any());
+    }
 
     @Test
-    public void should_not_convert_if_no_converter_factory() {
-        assertEquals(Optional.empty(), FactoryConverter.convert(NoConverter.class, "12345"));
+    public void should_resolve_bound_converter_again_after_invalidated() {
+        ConverterRegistry registry = new ConverterRegistry();
+        List<ParamConverterProvider> providers = new ArrayList<>();
+        registry.use(() -> providers);
+        MethodInvoker.ValueConverter<Object> converter = registry.converter(Fallback.class);
+        assertEquals(new Fallback("12345"), converter.fromString(List.of("12345")));
+
+        providers.add(new FallbackProvider("provided"));
+        registry.invalidate();
+
+        assertEquals(new Fallback("provided"), converter.fromString(List.of("12345")));
+    }
+
+    @Test
+    public void should_use_param_converter_providers_from_runtime() {
+        Runtime runtime = mock(Runtime.class);
+        when(runtime.getParamConverterProviders()).thenReturn(List.of(new FallbackProvider("provided")));
+        try {
+            new ResourceServlet(runtime, null);
+
+            assertEquals(new Fallback("provided"), MethodInvoker.converter(Fallback.class).fromString(List.of("1")));
+        } finally {
+            ConverterRegistry.DEFAULT.use(List::of);
+        }
+    }
+
+    static class FallbackProvider implements ParamConverterProvider {
+        private final String value;
+
+        FallbackProvider(String value) {
+            this.value = value;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> ParamConverter<T> getConverter(Class<T> rawType, Type genericType, Annotation[] annotations) {
+            if (rawType != Fallback.class) {
+                return null;
+            }
+            return (ParamConverter<T>) new ParamConverter<Fallback>() {
+                @Override
+                public Fallback fromString(String ignored) {
+                    return new Fallback(value);
+                }
+
+                @Override
+                public String toString(Fallback fallback) {
+                    return fallback.value();
+                }
+            };
+        }
+    }
+
+    record Fallback(String value) {
+        public Fallback {
+            if (!value.equals("provided") && !value.chars().allMatch(Character::isDigit)) {
+                throw new IllegalArgumentException(value);
+            }
+        }
+
+        public static Fallback valueOf(String value) {
+            return new Fallback(String.valueOf(value.length()));
+        }
+    }
+
+    enum Level {
+        High, Low;
+
+        public static Level fromString(String value) {
+            return value.equalsIgnoreCase("high") ? High : Low;
+        }
     }
 }
 
@@ -0,0 +1,154 @@
+package com.kuan.rest;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.container.CompletionCallback;
+import jakarta.ws.rs.container.ConnectionCallback;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class DefaultAsyncResponseTest {
+
+    @Test
+    public void should_complete_stage_when_resumed() throws Exception {
+        DefaultAsyncResponse response = new DefaultAsyncResponse();
+
+        assertTrue(response.isSuspended());
+        assertTrue(response.resume("entity"));
+
+        assertFalse(response.isSuspended());
+        assertTrue(response.isDone());
+        assertEquals("entity", response.stage().toCompletableFuture().get());
+        assertFalse(response.resume("again"));
+    }
+
+    @Test
+    public void should_complete_stage_exceptionally_when_resumed_with_exception() {
+        DefaultAsyncResponse response = new DefaultAsyncResponse();
+        IllegalStateException exception = new IllegalStateException();
+
+        response.resume(exception);
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> response.stage().toCompletableFuture().get());
+        assertSame(exception, error.getCause());
+    }
+
+    @Test
+    public void should_resume_with_service_unavailable_when_cancelled() throws Exception {
+        DefaultAsyncResponse response = new DefaultAsyncResponse();
+
+        assertTrue(response.cancel());
+
+        assertTrue(response.isCancelled());
+        assertTrue(response.cancel());
+        assertSame(Responses.SERVICE_UNAVAILABLE, response.stage().toCompletableFuture().get());
+        assertFalse(response.resume("entity"));
+    }
+
+    @Test
+    public void should_not_cancel_resumed_response() {
+        DefaultAsyncResponse response = new DefaultAsyncResponse();
+        response.resume("entity");
+
+        assertFalse(response.cancel());
+        assertFalse(response.isCancelled());
+    }
+
+    @Test
+    public void should_resume_with_service_unavailable_when_timeout() {
+        DefaultAsyncResponse response = new DefaultAsyncResponse();
+
+        response.setTimeout(10, TimeUnit.MILLISECONDS);
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> response.stage().toCompletableFuture().get(1, TimeUnit.SECONDS));
+        WebApplicationException exception = (WebApplicationException) error.getCause();
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), exception.getResponse().getStatus());
+    }
+
+    @Test
+    public void should_call_timeout_handler_when_timeout() throws Exception {
+        DefaultAsyncResponse response = new DefaultAsyncResponse();
+        response.setTimeoutHandler(asyncResponse -> asyncResponse.resume("timeout"));
+
+        response.setTimeout(10, TimeUnit.MILLISECONDS);
+
+        assertEquals("timeout", response.stage().toCompletableFuture().get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void should_not_set_timeout_after_resumed() {
+        DefaultAsyncResponse response = new DefaultAsyncResponse();
+        response.resume("entity");
+
+        assertFalse(response.setTimeout(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void should_resume_with_converted_value_of_completion_stage() throws Exception {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        DefaultAsyncResponse response = DefaultAsyncResponse.of(future, value -> "converted " + value);
+
+        future.complete("value");
+
+        assertEquals("converted value", response.stage().toCompletableFuture().get());
+    }
+
+    @Test
+    public void should_unwrap_exception_of_completion_stage() {
+        IllegalStateException exception = new IllegalStateException();
+        DefaultAsyncResponse response = DefaultAsyncResponse.of(
+                CompletableFuture.supplyAsync(() -> {
+                    throw exception;
+                }), value -> value);
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> response.stage().toCompletableFuture().get(1, TimeUnit.SECONDS));
+        assertSame(exception, error.getCause());
+    }
+
+    @Test
+    public void should_cancel_completion_stage_when_timeout() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        DefaultAsyncResponse response = DefaultAsyncResponse.of(future, value -> value);
+
+        response.setTimeout(10, TimeUnit.MILLISECONDS);
+
+        assertThrows(ExecutionException.class, () -> response.stage().toCompletableFuture().get(1, TimeUnit.SECONDS));
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void should_resume_with_service_unavailable_if_completion_stage_never_completes() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        DefaultAsyncResponse response = DefaultAsyncResponse.of(future, value -> value, 10);
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> response.stage().toCompletableFuture().get(1, TimeUnit.SECONDS));
+        WebApplicationException exception = (WebApplicationException) error.getCause();
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), exception.getResponse().getStatus());
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void should_call_registered_callbacks() {
+        DefaultAsyncResponse response = new DefaultAsyncResponse();
+        CompletionCallback completion = mock(CompletionCallback.class);
+        ConnectionCallback connection = mock(ConnectionCallback.class);
+
+        response.register(completion, connection);
+        response.disconnected();
+        response.completed(null);
+
+        verify(connection).onDisconnect(response);
+        verify(completion).onComplete(null);
+        assertTrue(response.isCancelled());
+    }
+}
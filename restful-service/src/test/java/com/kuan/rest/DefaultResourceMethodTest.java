@@ -1,7 +1,9 @@
 package com.kuan.rest;
 
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
 import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.GenericEntity;
 import jakarta.ws.rs.core.UriInfo;
@@ -13,6 +15,8 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -36,6 +40,13 @@ public class DefaultResourceMethodTest extends InjectableCallerTest{
                         throw new WebApplicationException(300);
                     }
 
+                    if (method.getName().equals("getAsync")) {
+                        return CompletableFuture.completedFuture(List.of("async"));
+                    }
+                    if (method.getName().equals("suspend")) {
+                        ((AsyncResponse) args[0]).resume("suspended");
+                    }
+
                     return "getList".equals(method.getName()) ? new ArrayList<String>() : null;
                 });
     }
@@ -64,6 +75,28 @@ public class DefaultResourceMethodTest extends InjectableCallerTest{
                 resourceMethod.call(context, builder));
     }
 
+    @Test
+    public void should_wrap_completion_stage_as_async_response() throws Exception {
+        DefaultResourceMethod resourceMethod = getResourceMethod("getAsync");
+
+        GenericEntity<?> entity = resourceMethod.call(context, builder);
+
+        assertEquals(DefaultAsyncResponse.class, entity.getRawType());
+        Object result = ((DefaultAsyncResponse) entity.getEntity()).stage().toCompletableFuture().get();
+        assertEquals(new GenericEntity<>(List.of("async"),
+                CallableResourceMethods.class.getMethod("getList").getGenericReturnType()), result);
+    }
+
+    @Test
+    public void should_return_suspended_async_response() throws Exception {
+        DefaultResourceMethod resourceMethod = getResourceMethod("suspend", AsyncResponse.class);
+
+        GenericEntity<?> entity = resourceMethod.call(context, builder);
+
+        assertEquals(DefaultAsyncResponse.class, entity.getRawType());
+        assertEquals("suspended", ((DefaultAsyncResponse) entity.getEntity()).stage().toCompletableFuture().get());
+    }
+
     @Override
     protected void callInjectable(String method, Class<?> type) {
         DefaultResourceMethod resourceMethod = getResourceMethod(method, type);
@@ -88,6 +121,12 @@ public class DefaultResourceMethodTest extends InjectableCallerTest{
         @GET
         List<String> getList();
 
+        @GET
+        CompletionStage<List<String>> getAsync();
+
+        @GET
+        void suspend(@Suspended AsyncResponse response);
+
         @GET
         String getPathParam(@PathParam("param") String value);
 
@@ -0,0 +1,146 @@
+package com.kuan.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.core.PathSegment;
+import jakarta.ws.rs.core.UriInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class DefaultUriInfoBuilderTest {
+    private DefaultUriInfoBuilder builder;
+
+    @BeforeEach
+    public void before() {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getScheme()).thenReturn("http");
+        when(request.getServerName()).thenReturn("localhost");
+        when(request.getServerPort()).thenReturn(8080);
+        when(request.getContextPath()).thenReturn("/app");
+        when(request.getRequestURI()).thenReturn("/app/users/john%20smith;version=1/orders+1");
+        when(request.getQueryString()).thenReturn("name=a%20b&tag=1&tag=2&q=c+d");
+
+        builder = new DefaultUriInfoBuilder(request);
+    }
+
+    @Test
+    public void should_create_only_one_uri_info_until_matched_resources_or_path_parameters_changed() {
+        UriInfo uriInfo = builder.createUriInfo();
+
+        assertSame(uriInfo, builder.createUriInfo());
+
+        builder.addMatchedPathParameters(Map.of());
+        assertSame(uriInfo, builder.createUriInfo());
+
+        builder.addMatchedResource("users");
+        UriInfo matched = builder.createUriInfo();
+        assertNotSame(uriInfo, matched);
+        assertSame(matched, builder.createUriInfo());
+
+        builder.addMatchedPathParameters(Map.of("id", "1"));
+        assertNotSame(matched, builder.createUriInfo());
+    }
+
+    @Test
+    public void should_keep_matched_resources_and_path_parameters_of_created_uri_info() {
+        builder.addMatchedResource("users");
+        builder.addMatchedPathParameters(Map.of("id", "1"));
+        UriInfo users = builder.createUriInfo();
+
+        builder.addMatchedResource("orders");
+        builder.addMatchedPathParameters(Map.of("id", "2"));
+        UriInfo orders = builder.createUriInfo();
+
+        assertEquals(List.of("users"), users.getMatchedResources());
+        assertEquals(List.of("1"), users.getPathParameters().get("id"));
+        assertEquals(List.of("orders", "users"), orders.getMatchedResources());
+        assertEquals(List.of("1", "2"), orders.getPathParameters().get("id"));
+        assertEquals("orders", builder.getLastMatchedResource());
+    }
+
+    @Test
+    public void should_not_read_path_parameters_from_match_result_until_uri_info_created() {
+        UriTemplate.MatchResult result = mock(UriTemplate.MatchResult.class);
+        when(result.getMatchedPathParameters()).thenReturn(Map.of("id", "1"));
+        builder.addMatchedResource("users");
+
+        builder.addMatchedPathParameters(result);
+        verify(result, never()).getMatchedPathParameters();
+
+        assertEquals(List.of("1"), builder.createUriInfo().getPathParameters().get("id"));
+        builder.createUriInfo();
+        verify(result, times(1)).getMatchedPathParameters();
+    }
+
+    @Test
+    public void should_keep_order_of_lazy_and_eager_path_parameters() {
+        UriTemplate.MatchResult result = mock(UriTemplate.MatchResult.class);
+        when(result.getMatchedPathParameters()).thenReturn(Map.of("id", "1"));
+
+        builder.addMatchedPathParameters(result);
+        builder.addMatchedPathParameters(Map.of("id", "2"));
+
+        assertEquals(List.of("1", "2"), builder.createUriInfo().getPathParameters().get("id"));
+    }
+
+    @Test
+    public void should_share_lazily_computed_views_between_uri_infos_of_same_request() {
+        UriInfo uriInfo = builder.createUriInfo();
+        builder.addMatchedResource("users");
+        UriInfo matched = builder.createUriInfo();
+
+        assertSame(uriInfo.getQueryParameters(), matched.getQueryParameters());
+        assertSame(uriInfo.getPathSegments(), matched.getPathSegments());
+        assertSame(uriInfo.getRequestUri(), matched.getRequestUri());
+    }
+
+    @Test
+    public void should_decode_query_parameters_only_if_required() {
+        UriInfo uriInfo = builder.createUriInfo();
+
+        assertEquals(List.of("a b"), uriInfo.getQueryParameters().get("name"));
+        assertEquals(List.of("1", "2"), uriInfo.getQueryParameters().get("tag"));
+        assertEquals(List.of("c d"), uriInfo.getQueryParameters().get("q"));
+        assertEquals(List.of("a%20b"), uriInfo.getQueryParameters(false).get("name"));
+    }
+
+    @Test
+    public void should_decode_path_and_path_segments() {
+        UriInfo uriInfo = builder.createUriInfo();
+
+        assertEquals("users/john smith;version=1/orders+1", uriInfo.getPath());
+        assertEquals("users/john%20smith;version=1/orders+1", uriInfo.getPath(false));
+
+        List<PathSegment> segments = uriInfo.getPathSegments();
+        assertEquals(3, segments.size());
+        assertEquals("john smith", segments.get(1).getPath());
+        assertEquals(List.of("1"), segments.get(1).getMatrixParameters().get("version"));
+        assertEquals("orders+1", segments.get(2).getPath());
+        assertEquals("john%20smith", uriInfo.getPathSegments(false).get(1).getPath());
+    }
+
+    @Test
+    public void should_build_request_uri_relative_to_base_uri() {
+        UriInfo uriInfo = builder.createUriInfo();
+
+        assertEquals(URI.create("http://localhost:8080/app/"), uriInfo.getBaseUri());
+        assertEquals(URI.create("http://localhost:8080/app/users/john%20smith;version=1/orders+1"),
+                uriInfo.getAbsolutePath());
+        assertEquals("name=a%20b&tag=1&tag=2&q=c+d", uriInfo.getRequestUri().getRawQuery());
+        assertEquals(URI.create("http://localhost:8080/app/users"), uriInfo.resolve(URI.create("users")));
+    }
+
+    @Test
+    public void should_omit_default_port_and_missing_query() {
+        UriInfo uriInfo = new DefaultUriInfoBuilder("https", "example.com", 443, "", "/users", null).createUriInfo();
+
+        assertEquals(URI.create("https://example.com/users"), uriInfo.getRequestUri());
+        assertTrue(uriInfo.getQueryParameters().isEmpty());
+    }
+}
@@ -0,0 +1,52 @@
+package com.kuan.rest;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class EntityBufferTest {
+
+    @Test
+    public void should_split_entity_into_chunks() throws Exception {
+        byte[] entity = new byte[EntityBuffer.CHUNK_SIZE * 2 + 10];
+        Arrays.fill(entity, (byte) 'a');
+        EntityBuffer buffer = new EntityBuffer();
+
+        buffer.write(entity, 0, EntityBuffer.CHUNK_SIZE - 1);
+        buffer.write('b');
+        buffer.write(entity, 0, EntityBuffer.CHUNK_SIZE + 10);
+
+        assertEquals(entity.length, buffer.size());
+        assertEquals(3, buffer.chunks());
+        entity[EntityBuffer.CHUNK_SIZE - 1] = 'b';
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        buffer.writeTo(output);
+        assertArrayEquals(entity, output.toByteArray());
+    }
+
+    @Test
+    public void should_write_last_chunk_partially() throws Exception {
+        EntityBuffer buffer = new EntityBuffer();
+        buffer.write("entity".getBytes(), 0, 6);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        buffer.writeChunk(0, output);
+
+        assertEquals("entity", output.toString());
+    }
+
+    @Test
+    public void should_be_empty_after_released() throws Exception {
+        EntityBuffer buffer = new EntityBuffer();
+        buffer.write(new byte[100], 0, 100);
+
+        buffer.release();
+
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.chunks());
+    }
+}
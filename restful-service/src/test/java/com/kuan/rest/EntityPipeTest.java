@@ -0,0 +1,101 @@
+package com.kuan.rest;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class EntityPipeTest {
+    private AsyncContext context;
+    private StubOutput output;
+
+    @BeforeEach
+    public void before() {
+        context = mock(AsyncContext.class);
+        output = new StubOutput();
+    }
+
+    @Test
+    public void should_write_directly_if_listener_is_idle() throws Exception {
+        EntityPipe pipe = new EntityPipe(context, output, 1);
+        pipe.onWritePossible();
+
+        pipe.write("entity".getBytes(), 0, 6);
+        pipe.close();
+
+        assertEquals("entity", output.written.toString());
+        verify(context).complete();
+    }
+
+    @Test
+    public void should_wait_for_listener_if_queue_is_full() throws Exception {
+        EntityPipe pipe = new EntityPipe(context, output, 1);
+        output.ready = false;
+        byte[] entity = new byte[EntityBuffer.CHUNK_SIZE * 3];
+
+        CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+            try {
+                pipe.write(entity, 0, entity.length);
+                pipe.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        assertThrows(Exception.class, () -> producer.get(100, TimeUnit.MILLISECONDS));
+        assertEquals(0, output.written.size());
+
+        output.ready = true;
+        pipe.onWritePossible();
+        producer.get(1, TimeUnit.SECONDS);
+
+        assertEquals(entity.length, output.written.size());
+        verify(context).complete();
+    }
+
+    @Test
+    public void should_fail_writes_after_error() throws Exception {
+        EntityPipe pipe = new EntityPipe(context, output, 1);
+        output.ready = false;
+        pipe.write(new byte[EntityBuffer.CHUNK_SIZE], 0, EntityBuffer.CHUNK_SIZE);
+
+        pipe.onError(new IOException("closed"));
+
+        assertThrows(IOException.class, () -> pipe.write(new byte[EntityBuffer.CHUNK_SIZE], 0, EntityBuffer.CHUNK_SIZE));
+        assertEquals(0, output.written.size());
+        verify(context).complete();
+    }
+
+    static class StubOutput extends ServletOutputStream {
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private volatile boolean ready = true;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+
+        @Override
+        public void write(int b) {
+            written.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            written.write(b, off, len);
+        }
+    }
+}
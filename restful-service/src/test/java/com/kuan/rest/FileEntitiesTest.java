@@ -0,0 +1,151 @@
+package com.kuan.rest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileEntitiesTest {
+
+    @Test
+    public void should_not_map_path_entity(@TempDir Path directory) throws Exception {
+        Path file = Files.writeString(directory.resolve("report.txt"), "content");
+
+        assertNull(FileEntities.mapped(file));
+        assertNull(FileEntities.mapped(file.toFile()));
+    }
+
+    @Test
+    public void should_copy_until_end_if_transfer_to_transferred_part_of_file(@TempDir Path directory)
+            throws Exception {
+        Path file = Files.writeString(directory.resolve("report.txt"), "0123456789");
+        FileChannel channel = new PartialChannel(FileChannel.open(file, StandardOpenOption.READ), 3);
+        channel.position(2);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        FileEntities.copy(channel, output);
+
+        assertEquals("23456789", output.toString(StandardCharsets.UTF_8));
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void should_fail_if_file_truncated_while_copying(@TempDir Path directory) throws Exception {
+        Path file = Files.writeString(directory.resolve("report.txt"), "0123456789");
+        FileChannel channel = new PartialChannel(FileChannel.open(file, StandardOpenOption.READ), 0);
+
+        assertThrows(EOFException.class, () -> FileEntities.copy(channel, new ByteArrayOutputStream()));
+    }
+
+    // 每次 transferTo 最多传输 limit 字节，模拟超过 2GB 的文件
+    static class PartialChannel extends FileChannel {
+        private final FileChannel channel;
+        private final int limit;
+
+        PartialChannel(FileChannel channel, int limit) {
+            this.channel = channel;
+            this.limit = limit;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return channel.transferTo(position, Math.min(count, limit), target);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return channel.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            channel.force(metaData);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return channel.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return channel.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+}
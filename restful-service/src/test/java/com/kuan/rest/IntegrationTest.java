@@ -191,7 +191,7 @@ class UsersApi {
                 .filter(user -> user.getId().equals(id))
                 .findFirst()
                 .map(UserApi::new)
-                .orElseThrow(() -> new WebApplicationException(404));
+                .orElseThrow(() -> new StacklessWebApplicationException(404));
     }
 
 }
@@ -0,0 +1,76 @@
+package com.kuan.rest;
+
+import jakarta.ws.rs.core.MediaType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MediaTypesTest {
+
+    @Test
+    public void should_sort_accept_by_specificity_and_quality() {
+        MediaTypes.MediaRange[] ranges = MediaTypes.parse("*/*;q=0.1, text/*, application/json;q=0.8, text/html");
+
+        assertArrayEquals(new MediaTypes.MediaRange[]{
+                new MediaTypes.MediaRange("text", "html", 1000),
+                new MediaTypes.MediaRange("application", "json", 800),
+                new MediaTypes.MediaRange("text", "*", 1000),
+                new MediaTypes.MediaRange("*", "*", 100)}, ranges);
+    }
+
+    @Test
+    public void should_reuse_parsed_result_for_same_header() {
+        String accept = "application/xml, application/json;q=0.9";
+
+        assertSame(MediaTypes.parse(accept), MediaTypes.parse(accept));
+    }
+
+    @Test
+    public void should_prefer_media_type_with_higher_quality() {
+        MediaTypes mediaTypes = MediaTypes.of("text/plain;q=0.5, application/json", null);
+
+        assertTrue(mediaTypes.quality(MediaTypes.parse(MediaType.APPLICATION_JSON))
+                > mediaTypes.quality(MediaTypes.parse(MediaType.TEXT_PLAIN)));
+        assertEquals(-1, mediaTypes.quality(MediaTypes.parse("image/png")));
+    }
+
+    @Test
+    public void should_treat_missing_headers_as_any_media_type() {
+        assertSame(MediaTypes.ANY, MediaTypes.of(null, ""));
+        assertTrue(MediaTypes.ANY.quality(MediaTypes.parse("image/png")) > 0);
+        assertTrue(MediaTypes.ANY.isConsumable(MediaTypes.parse(MediaType.APPLICATION_JSON)));
+        assertEquals(MediaTypes.of("text/plain", null), MediaTypes.accept(MediaType.TEXT_PLAIN));
+    }
+
+    @Test
+    public void should_ignore_content_type_parameters() {
+        MediaTypes first = MediaTypes.of(null, "multipart/form-data; boundary=----1");
+        MediaTypes second = MediaTypes.of(null, "multipart/form-data; boundary=----2");
+
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertTrue(first.isConsumable(MediaTypes.parse(MediaType.MULTIPART_FORM_DATA)));
+    }
+
+    @Test
+    public void should_not_cache_content_type() {
+        int cached = MediaTypes.cachedHeaders();
+
+        MediaTypes.of(null, "multipart/form-data; boundary=" + System.nanoTime());
+
+        assertEquals(cached, MediaTypes.cachedHeaders());
+    }
+
+    @Test
+    public void should_evict_headers_when_cache_is_full() {
+        String hot = "text/html, application/xhtml+xml, */*;q=0.8";
+        MediaTypes.MediaRange[] ranges = MediaTypes.parse(hot);
+
+        for (int i = 0; i < MediaTypes.MAX_CACHED_HEADERS * 2; i++) {
+            MediaTypes.parse("application/x-" + i);
+            assertSame(ranges, MediaTypes.parse(hot));
+        }
+
+        assertTrue(MediaTypes.cachedHeaders() <= MediaTypes.MAX_CACHED_HEADERS);
+    }
+}
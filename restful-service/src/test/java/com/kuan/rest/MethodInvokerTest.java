@@ -0,0 +1,204 @@
+package com.kuan.rest;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.net.URI;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class MethodInvokerTest {
+    private ResourceContext context;
+    private UriInfoBuilder builder;
+
+    @BeforeEach
+    public void before() {
+        RuntimeDelegate delegate = mock(RuntimeDelegate.class);
+        RuntimeDelegate.setInstance(delegate);
+        when(delegate.createResponseBuilder()).thenReturn(new StubResponseBuilder());
+
+        MultivaluedHashMap<String, String> parameters = new MultivaluedHashMap<>();
+        parameters.put("id", List.of("42"));
+        UriInfo uriInfo = mock(UriInfo.class);
+        when(uriInfo.getPathParameters()).thenReturn(parameters);
+        when(uriInfo.getQueryParameters()).thenReturn(new MultivaluedHashMap<>());
+
+        context = mock(ResourceContext.class);
+        builder = mock(UriInfoBuilder.class);
+        when(builder.createUriInfo()).thenReturn(uriInfo);
+        when(builder.getLastMatchedResource()).thenReturn(new Resource());
+    }
+
+    @ParameterizedTest
+    @EnumSource(MethodInvoker.Mode.class)
+    public void should_invoke_method_of_package_private_resource_class(MethodInvoker.Mode mode) throws Exception {
+        assertEquals(43L, new MethodInvoker(Resource.class.getMethod("next", int.class), mode).invoke(context, builder));
+        assertNull(new MethodInvoker(Resource.class.getMethod("nothing"), mode).invoke(context, builder));
+    }
+
+    @ParameterizedTest
+    @EnumSource(MethodInvoker.Mode.class)
+    public void should_rethrow_web_application_exception_from_method(MethodInvoker.Mode mode) throws Exception {
+        MethodInvoker invoker = new MethodInvoker(Resource.class.getMethod("notFound"), mode);
+
+        assertThrows(WebApplicationException.class, () -> invoker.invoke(context, builder));
+    }
+
+    @ParameterizedTest
+    @EnumSource(MethodInvoker.Mode.class)
+    public void should_wrap_other_exception_from_method(MethodInvoker.Mode mode) throws Exception {
+        MethodInvoker invoker = new MethodInvoker(Resource.class.getMethod("fail"), mode);
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> invoker.invoke(context, builder));
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+    }
+
+    @Test
+    public void should_not_create_uri_info_if_no_parameter_requires_it() throws Exception {
+        when(context.getResource(eq(String.class))).thenReturn("service");
+
+        assertEquals("service", new MethodInvoker(Resource.class.getMethod("context", String.class))
+                .invoke(context, builder));
+        verify(builder, never()).createUriInfo();
+    }
+
+    @Test
+    public void should_get_parameter_from_context_if_parameter_not_found() throws Exception {
+        when(context.getResource(eq(String.class))).thenReturn("from-context");
+
+        assertEquals("from-context", new MethodInvoker(Resource.class.getMethod("query", String.class))
+                .invoke(context, builder));
+    }
+
+    @ParameterizedTest
+    @EnumSource(MethodInvoker.Mode.class)
+    public void should_bind_primitive_array_from_raw_query(MethodInvoker.Mode mode) throws Exception {
+        UriInfo uriInfo = builder.createUriInfo();
+        when(uriInfo.getRequestUri()).thenReturn(URI.create("/reports?id=1&name=a&id=2&id=%2D3"));
+
+        assertEquals(0L, new MethodInvoker(Resource.class.getMethod("sum", long[].class), mode)
+                .invoke(context, builder));
+        verify(uriInfo, never()).getQueryParameters();
+    }
+
+    @Test
+    public void should_bind_list_of_long_from_raw_query() throws Exception {
+        UriInfo uriInfo = builder.createUriInfo();
+        when(uriInfo.getRequestUri()).thenReturn(URI.create("/reports?id=1&id=2"));
+
+        assertEquals(List.of(1L, 2L), new MethodInvoker(Resource.class.getMethod("ids", List.class))
+                .invoke(context, builder));
+    }
+
+    @Test
+    public void should_bind_empty_array_if_query_parameter_not_found() throws Exception {
+        UriInfo uriInfo = builder.createUriInfo();
+        when(uriInfo.getRequestUri()).thenReturn(URI.create("/reports"));
+
+        assertEquals(0L, new MethodInvoker(Resource.class.getMethod("sum", long[].class)).invoke(context, builder));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/reports?id=", "/reports?id=1&id=a"})
+    public void should_not_found_if_query_parameter_is_empty_or_not_a_number(String uri) throws Exception {
+        when(builder.createUriInfo().getRequestUri()).thenReturn(URI.create(uri));
+        MethodInvoker invoker = new MethodInvoker(Resource.class.getMethod("sum", long[].class));
+
+        WebApplicationException exception = assertThrows(WebApplicationException.class, () -> invoker.invoke(context, builder));
+        assertEquals(404, exception.getResponse().getStatus());
+    }
+
+    @Test
+    public void should_not_found_if_query_parameter_is_not_a_number_and_no_request_uri() throws Exception {
+        builder.createUriInfo().getQueryParameters().put("id", List.of("4", ""));
+        MethodInvoker invoker = new MethodInvoker(Resource.class.getMethod("ids", List.class));
+
+        WebApplicationException exception = assertThrows(WebApplicationException.class, () -> invoker.invoke(context, builder));
+        assertEquals(404, exception.getResponse().getStatus());
+    }
+
+    @Test
+    public void should_bind_primitive_array_from_query_parameters_if_no_request_uri() throws Exception {
+        builder.createUriInfo().getQueryParameters().put("id", List.of("4", "5"));
+
+        assertEquals(9L, new MethodInvoker(Resource.class.getMethod("sum", long[].class)).invoke(context, builder));
+    }
+
+    @Test
+    public void should_look_up_query_parameter_from_lazy_query_parameters() throws Exception {
+        when(builder.createUriInfo().getQueryParameters())
+                .thenReturn(new QueryParameters("utm_source=mail&missing=a%20b", true));
+
+        assertEquals("a b", new MethodInvoker(Resource.class.getMethod("query", String.class))
+                .invoke(context, builder));
+    }
+
+    @Test
+    public void should_call_resource_method_through_generated_invoker() throws Exception {
+        when(builder.getLastMatchedResource()).thenReturn(new Generated());
+
+        assertEquals(Generated.class.getName() + "$$Invokers$Invoker0",
+                new MethodInvoker(Generated.class.getMethod("caller"), MethodInvoker.Mode.GENERATED)
+                        .invoke(context, builder));
+    }
+
+    @Path("/generated")
+    static class Generated {
+        @GET
+        public String caller() {
+            return StackWalker.getInstance().walk(frames -> frames.skip(1).findFirst()).orElseThrow().getClassName();
+        }
+    }
+
+    static class Resource {
+        public long sum(@QueryParam("id") long[] ids) {
+            long sum = 0;
+            for (long id : ids) {
+                sum += id;
+            }
+            return sum;
+        }
+
+        public List<Long> ids(@QueryParam("id") List<Long> ids) {
+            return ids;
+        }
+
+        public String context(String service) {
+            return service;
+        }
+
+        public String query(@QueryParam("missing") String value) {
+            return value;
+        }
+
+        public long next(@PathParam("id") int id) {
+            return id + 1;
+        }
+
+        public void nothing() {
+        }
+
+        public String notFound() {
+            throw new WebApplicationException(404);
+        }
+
+        public String fail() {
+            throw new IllegalStateException();
+        }
+    }
+}
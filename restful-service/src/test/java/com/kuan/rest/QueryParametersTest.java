@@ -0,0 +1,79 @@
+package com.kuan.rest;
+
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryParametersTest {
+
+    @Test
+    public void should_get_decoded_values_of_requested_parameter() {
+        QueryParameters parameters = new QueryParameters("utm_source=a%20b&id=1&utm_medium=c&id=2&name=x+y", true);
+
+        assertEquals(List.of("1", "2"), parameters.get("id"));
+        assertEquals(List.of("x y"), parameters.get("name"));
+        assertEquals("a b", parameters.getFirst("utm_source"));
+        assertNull(parameters.get("missing"));
+        assertNull(parameters.getFirst("missing"));
+    }
+
+    @Test
+    public void should_keep_raw_values_if_not_decode() {
+        QueryParameters parameters = new QueryParameters("name=x+y&q=%E4%B8%AD", false);
+
+        assertEquals(List.of("x+y"), parameters.get("name"));
+        assertEquals(List.of("%E4%B8%AD"), parameters.get("q"));
+    }
+
+    @Test
+    public void should_decode_multi_bytes_and_encoded_names() {
+        QueryParameters parameters = new QueryParameters("q=%E4%B8%AD%E6%96%87&user%20id=1&bad=%zz", true);
+
+        assertEquals(List.of("中文"), parameters.get("q"));
+        assertEquals(List.of("1"), parameters.get("user id"));
+        assertEquals(List.of("%zz"), parameters.get("bad"));
+    }
+
+    @Test
+    public void should_treat_parameter_without_value_as_empty_string() {
+        QueryParameters parameters = new QueryParameters("flag&&name=&a=b=c", true);
+
+        assertEquals(List.of(""), parameters.get("flag"));
+        assertEquals(List.of(""), parameters.get("name"));
+        assertEquals(List.of("b=c"), parameters.get("a"));
+        assertTrue(parameters.containsKey("flag"));
+        assertFalse(parameters.containsKey("fla"));
+    }
+
+    @Test
+    public void should_return_same_values_for_repeated_lookup() {
+        QueryParameters parameters = new QueryParameters("id=1", true);
+
+        assertSame(parameters.get("id"), parameters.get("id"));
+    }
+
+    @Test
+    public void should_behave_as_multivalued_map_when_iterated() {
+        QueryParameters parameters = new QueryParameters("id=1&name=a&id=2", true);
+        MultivaluedHashMap<String, String> expected = new MultivaluedHashMap<>();
+        expected.put("id", List.of("1", "2"));
+        expected.put("name", List.of("a"));
+
+        assertEquals(2, parameters.size());
+        assertEquals(Map.of("id", List.of("1", "2"), "name", List.of("a")), parameters);
+        assertTrue(parameters.equalsIgnoreValueOrder(expected));
+        assertTrue(new QueryParameters(null, true).isEmpty());
+    }
+
+    @Test
+    public void should_not_be_modified() {
+        QueryParameters parameters = new QueryParameters("id=1", true);
+
+        assertThrows(UnsupportedOperationException.class, () -> parameters.add("id", "2"));
+        assertThrows(UnsupportedOperationException.class, () -> parameters.get("id").add("2"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.kuan.rest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryStringTest {
+
+    @Test
+    public void should_parse_repeated_parameter_into_primitive_array() {
+        String query = "id=1&id=2&other=3&id=4";
+
+        assertArrayEquals(new long[]{1, 2, 4}, QueryString.longs(query, "id"));
+        assertArrayEquals(new int[]{1, 2, 4}, QueryString.ints(query, "id"));
+        assertArrayEquals(new double[]{3}, QueryString.doubles(query, "other"));
+    }
+
+    @Test
+    public void should_grow_array_for_many_values() {
+        StringBuilder query = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            query.append(i == 0 ? "" : "&").append("id=").append(i);
+        }
+
+        long[] ids = QueryString.longs(query.toString(), "id");
+
+        assertEquals(1000, ids.length);
+        assertEquals(999, ids[999]);
+    }
+
+    @Test
+    public void should_decode_encoded_name_and_value() {
+        assertArrayEquals(new long[]{-1, 2}, QueryString.longs("user%20id=%2D1&user+id=2", "user id"));
+    }
+
+    @Test
+    public void should_not_match_parameter_with_same_prefix_or_without_value() {
+        assertArrayEquals(new long[]{}, QueryString.longs("ids=1&id&i=2", "id"));
+        assertArrayEquals(new long[]{}, QueryString.longs("", "id"));
+    }
+
+    @Test
+    public void should_not_match_equals_sign_of_later_parameter() {
+        assertArrayEquals(new long[]{3}, QueryString.longs("id&name&id=3", "id"));
+        assertArrayEquals(new long[]{}, QueryString.longs("id&id&name=id", "id"));
+    }
+
+    @Test
+    public void should_throw_if_value_is_not_a_number() {
+        assertThrows(NumberFormatException.class, () -> QueryString.longs("id=a", "id"));
+        assertThrows(NumberFormatException.class, () -> QueryString.ints("id=1x", "id"));
+        assertThrows(NumberFormatException.class, () -> QueryString.doubles("id=a", "id"));
+    }
+
+    @Test
+    public void should_throw_if_value_is_empty() {
+        assertThrows(NumberFormatException.class, () -> QueryString.longs("id=", "id"));
+        assertThrows(NumberFormatException.class, () -> QueryString.ints("id=&id=1", "id"));
+        assertThrows(NumberFormatException.class, () -> QueryString.doubles("id=", "id"));
+    }
+
+    @Test
+    public void should_decode_double_only_if_encoded() {
+        assertArrayEquals(new double[]{1.5, -2}, QueryString.doubles("v=1.5&v=%2D2", "v"));
+    }
+
+    @Test
+    public void should_view_primitive_array_as_list() {
+        List<Long> ids = QueryString.asList(new long[]{1, 2});
+
+        assertEquals(List.of(1L, 2L), ids);
+        assertThrows(IndexOutOfBoundsException.class, () -> ids.get(2));
+        assertThrows(UnsupportedOperationException.class, () -> ids.add(3L));
+    }
+}
@@ -1,6 +1,8 @@
 package com.kuan.rest;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
 import jakarta.ws.rs.container.ResourceContext;
 import jakarta.ws.rs.core.GenericEntity;
 import jakarta.ws.rs.core.HttpHeaders;
@@ -18,8 +20,7 @@ import java.util.Vector;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 public class ResourceDispatcherTest {
     private Runtime runtime;
@@ -115,15 +116,99 @@ public class ResourceDispatcherTest {
         assertEquals(204, response.getStatus());
     }
 
+    @Test
+    public void should_not_create_resource_if_no_resource_method_matched() {
+        when(request.getServletPath()).thenReturn("/users/1/missing");
+
+        ResourceRouter router = new DefaultResourceRoot(runtime, List.of(new ResourceHandler(Users.class)));
+        OutboundResponse response = router.dispatch(request, context);
+
+        assertEquals(404, response.getStatus());
+        verify(context, never()).getResource(any());
+        verifyNoInteractions(builder);
+    }
+
+    @Test
+    public void should_create_resources_of_matched_chain_after_resource_method_matched() {
+        StubUriInfoBuilder builder = new StubUriInfoBuilder();
+        when(runtime.createUriInfoBuilder(same(request))).thenReturn(builder);
+        when(request.getServletPath()).thenReturn("/users/1/name");
+        when(context.getResource(eq(Users.class))).thenReturn(new Users());
+
+        ResourceRouter router = new DefaultResourceRoot(runtime, List.of(new ResourceHandler(Users.class)));
+        OutboundResponse response = router.dispatch(request, context);
+
+        assertEquals("name", response.getGenericEntity().getEntity());
+        assertInstanceOf(User.class, builder.getLastMatchedResource());
+        assertEquals(List.of("1"), builder.getPathParameters().get("id"));
+    }
+
+    @Test
+    public void should_match_sub_resource_methods_of_runtime_class_if_declared_type_can_be_subclassed() {
+        StubUriInfoBuilder builder = new StubUriInfoBuilder();
+        when(runtime.createUriInfoBuilder(same(request))).thenReturn(builder);
+        when(request.getServletPath()).thenReturn("/users/sub/extra");
+        when(context.getResource(eq(Users.class))).thenReturn(new Users());
+
+        ResourceRouter router = new DefaultResourceRoot(runtime, List.of(new ResourceHandler(Users.class)));
+        OutboundResponse response = router.dispatch(request, context);
+
+        assertEquals("extra", response.getGenericEntity().getEntity());
+        assertInstanceOf(SubUser.class, builder.getLastMatchedResource());
+    }
+
+    @Path("/users")
+    public static class Users {
+        @Path("/{id}")
+        public User user() {
+            return new User();
+        }
+
+        @Path("/sub")
+        public BaseUser sub() {
+            return new SubUser();
+        }
+    }
+
+    // final 类的子资源在匹配阶段不需要调用定位器
+    public static final class User {
+        @GET
+        @Path("/name")
+        public String name() {
+            return "name";
+        }
+    }
+
+    public static class BaseUser {
+        @GET
+        @Path("/name")
+        public String name() {
+            return "name";
+        }
+    }
+
+    public static class SubUser extends BaseUser {
+        @GET
+        @Path("/extra")
+        public String extra() {
+            return "extra";
+        }
+    }
+
     private ResourceRouter.Resource rootResource(StubUriTemplate stub) {
         ResourceRouter.Resource unmatched = mock(ResourceRouter.Resource.class);
         when(unmatched.getUriTemplate()).thenReturn(stub.uriTemplate);
-        when(unmatched.match(same(stub.result), eq("GET"), eq(new String[]{MediaType.WILDCARD}),
-                same(context), eq(builder)))
+        when(unmatched.match(same(stub.result), eq("GET"), eq(MediaTypes.accept(MediaType.WILDCARD)),
+                same(context), recording()))
                 .thenReturn(Optional.empty());
         return unmatched;
     }
 
+    // 匹配阶段资源拿到的是只记录绑定步骤的 Recorder，资源实例在匹配成功之后才绑定到 builder 上
+    private UriInfoBuilder recording() {
+        return argThat(b -> b instanceof RouteCache.Recorder);
+    }
+
     private StubUriTemplate unmatched(String path) {
         UriTemplate unmatchedUriTemplate = mock(UriTemplate.class);
         when(unmatchedUriTemplate.match(eq(path))).thenReturn(Optional.empty());
@@ -133,8 +218,8 @@ public class ResourceDispatcherTest {
     private ResourceRouter.Resource rootResource(StubUriTemplate stub, ResourceRouter.ResourceMethod method) {
         ResourceRouter.Resource matched = mock(ResourceRouter.Resource.class);
         when(matched.getUriTemplate()).thenReturn(stub.uriTemplate);
-        when(matched.match(same(stub.result), eq("GET"), eq(new String[]{MediaType.WILDCARD}),
-                same(context), eq(builder)))
+        when(matched.match(same(stub.result), eq("GET"), eq(MediaTypes.accept(MediaType.WILDCARD)),
+                same(context), recording()))
                 .thenReturn(Optional.of(method));
         return matched;
     }
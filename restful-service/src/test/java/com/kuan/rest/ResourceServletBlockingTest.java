@@ -0,0 +1,12 @@
+package com.kuan.rest;
+
+/**
+ * 容器不支持异步时，挂起的响应和大的实体都只能在容器线程上阻塞写出，ResourceServletTest 的所有测试都应该照样通过。
+ */
+public class ResourceServletBlockingTest extends ResourceServletTest {
+
+    @Override
+    protected boolean asyncSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,62 @@
+package com.kuan.rest;
+
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpResponse;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * 把分发交给 executor 之后，ResourceServletTest 的所有测试都应该照样通过。
+ */
+public class ResourceServletDispatchTest extends ResourceServletTest {
+    private final AtomicReference<Thread> dispatcher = new AtomicReference<>();
+
+    @Override
+    protected Executor executor() {
+        return command -> {
+            Thread thread = new Thread(command, "dispatch-test");
+            dispatcher.set(thread);
+            thread.start();
+        };
+    }
+
+    @Nested
+    class DispatchedRespondForOutboundResponse extends RespondForOutboundResponse {
+    }
+
+    @Test
+    public void should_dispatch_on_thread_from_executor() {
+        AtomicReference<Thread> dispatched = new AtomicReference<>();
+        when(router.dispatch(any(), eq(resourceContext))).thenAnswer(invocation -> {
+            dispatched.set(Thread.currentThread());
+            return Responses.NO_CONTENT;
+        });
+
+        HttpResponse<String> httpResponse = get("/test");
+
+        assertEquals(Response.Status.NO_CONTENT.getStatusCode(), httpResponse.statusCode());
+        assertNotNull(dispatched.get());
+        assertEquals(dispatcher.get(), dispatched.get());
+    }
+
+    @Test
+    public void should_use_executor_for_virtual_dispatch() {
+        if (ResourceServlet.VirtualThreads.AVAILABLE) {
+            assertEquals(ResourceServlet.VirtualThreads.EXECUTOR, ResourceServlet.Dispatch.VIRTUAL.executor());
+        } else {
+            assertThrows(IllegalStateException.class, ResourceServlet.Dispatch.VIRTUAL::executor);
+        }
+        assertNull(ResourceServlet.Dispatch.BLOCKING.executor());
+    }
+}
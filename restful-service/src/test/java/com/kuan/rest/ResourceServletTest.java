@@ -2,14 +2,21 @@ package com.kuan.rest;
 
 import jakarta.servlet.Servlet;
 import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.container.CompletionCallback;
 import jakarta.ws.rs.container.ResourceContext;
 import jakarta.ws.rs.core.*;
 import jakarta.ws.rs.ext.MessageBodyWriter;
 import jakarta.ws.rs.ext.Providers;
 import jakarta.ws.rs.ext.RuntimeDelegate;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.lang.annotation.Annotation;
@@ -18,25 +25,41 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.net.http.HttpResponse;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 public class ResourceServletTest extends ServletTest {
 
-    private ResourceRouter router;
-    private ResourceContext resourceContext;
+    private Runtime runtime;
+    protected ResourceRouter router;
+    protected ResourceContext resourceContext;
     private Providers providers;
     private RuntimeDelegate delegate;
 
     @Override
     protected Servlet getServlet() {
-        Runtime runtime = mock(Runtime.class);
+        runtime = mock(Runtime.class);
         router = mock(ResourceRouter.class);
         resourceContext = mock(ResourceContext.class);
         providers = mock(Providers.class);
@@ -45,9 +68,20 @@ public class ResourceServletTest extends ServletTest {
         when(runtime.createResourceContext(any(), any())).thenReturn(resourceContext);
         when(runtime.getProviders()).thenReturn(providers);
 
-        return new ResourceServlet(runtime);
+        return new ResourceServlet(runtime, executor(), command -> new Thread(() -> {
+            writersReleased.join();
+            command.run();
+        }, "entity-writer-test").start());
     }
 
+    // 为 null 时在容器线程上分发
+    protected Executor executor() {
+        return null;
+    }
+
+    // 测试可以先拦住序列化大的实体的线程
+    private CompletableFuture<Void> writersReleased = CompletableFuture.completedFuture(null);
+
     @BeforeEach
     public void before() {
         delegate = mock(RuntimeDelegate.class);
@@ -77,6 +111,25 @@ public class ResourceServletTest extends ServletTest {
             assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), httpResponse.statusCode());
         }
 
+        @Test
+        public void should_only_set_status_for_prebuilt_response() {
+            when(router.dispatch(any(), eq(resourceContext))).thenReturn(Responses.NOT_FOUND);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals(Response.Status.NOT_FOUND.getStatusCode(), httpResponse.statusCode());
+            verifyNoInteractions(providers, delegate);
+        }
+
+        @Test
+        public void should_use_prebuilt_response_from_stackless_exception() {
+            when(router.dispatch(any(), eq(resourceContext))).thenThrow(new StacklessWebApplicationException(404));
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals(Response.Status.NOT_FOUND.getStatusCode(), httpResponse.statusCode());
+            verifyNoInteractions(providers, delegate);
+        }
 
         @Test
         public void should_use_http_headers_from_response() {
@@ -90,6 +143,41 @@ public class ResourceServletTest extends ServletTest {
                     httpResponse.headers().allValues(HttpHeaders.SET_COOKIE).toArray(String[]::new));
         }
 
+        @Test
+        public void should_create_header_delegate_once_per_type() {
+            response().headers(HttpHeaders.SET_COOKIE, new NewCookie.Builder("SESSION_ID").value("session").build(),
+                            new NewCookie.Builder("USER_ID").value("user").build())
+                    .returnFrom(router);
+
+            get("/test");
+            get("/test");
+
+            verify(delegate, times(1)).createHeaderDelegate(eq(NewCookie.class));
+        }
+
+        @Test
+        public void should_write_string_and_pre_encoded_headers_without_header_delegate() {
+            response().headers(HttpHeaders.CACHE_CONTROL, new PreEncodedHttpField(HttpHeader.CACHE_CONTROL, "no-cache"))
+                    .headers("X-Trace", "trace")
+                    .returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals("no-cache", httpResponse.headers().firstValue(HttpHeaders.CACHE_CONTROL).get());
+            assertEquals("trace", httpResponse.headers().firstValue("X-Trace").get());
+            verify(delegate, never()).createHeaderDelegate(any());
+        }
+
+        @Test
+        public void should_decode_byte_array_header_as_iso_8859_1_without_header_delegate() {
+            response().headers(HttpHeaders.VARY, "Accept".getBytes(StandardCharsets.ISO_8859_1)).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals("Accept", httpResponse.headers().firstValue(HttpHeaders.VARY).get());
+            verify(delegate, never()).createHeaderDelegate(any());
+        }
+
         @Test
         public void should_write_entity_to_http_response_using_message_body_writer() {
             response().entity(new GenericEntity<>("entity", String.class), new Annotation[0])
@@ -100,6 +188,28 @@ public class ResourceServletTest extends ServletTest {
             assertEquals("entity", httpResponse.body());
         }
 
+        @Test
+        public void should_use_message_body_writer_registered_after_first_lookup() throws Exception {
+            response().entity(new GenericEntity<>("entity", String.class), new Annotation[0]).returnFrom(router);
+            ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+            verify(runtime).addProvidersListener(listener.capture());
+            get("/test");
+            MessageBodyWriter<String> registered = mock(MessageBodyWriter.class);
+            when(registered.getSize(any(), any(), any(), any(), any())).thenReturn(-1L);
+            doAnswer(invocation -> {
+                ((OutputStream) invocation.getArgument(6)).write("registered".getBytes());
+                return null;
+            }).when(registered).writeTo(any(), any(), any(), any(), any(), any(), any());
+            when(providers.getMessageBodyWriter(eq(String.class), eq(String.class), any(), any()))
+                    .thenReturn((MessageBodyWriter) registered);
+
+            assertEquals("entity", get("/test").body());
+
+            listener.getValue().run();
+
+            assertEquals("registered", get("/test").body());
+        }
+
         @Test
         public void should_not_call_message_body_writer_if_entity_is_null() {
             response().entity(null, new Annotation[0]).returnFrom(router);
@@ -109,6 +219,320 @@ public class ResourceServletTest extends ServletTest {
             assertEquals(Response.Status.OK.getStatusCode(), httpResponse.statusCode());
             assertEquals("", httpResponse.body());
         }
+
+        @Test
+        public void should_set_content_length_without_writing_entity_for_head_request() {
+            response().entity(new GenericEntity<>("entity", String.class), new Annotation[0])
+                    .returnFrom(router);
+
+            HttpResponse<String> httpResponse = head("/test");
+
+            assertEquals(Response.Status.OK.getStatusCode(), httpResponse.statusCode());
+            assertEquals("6", httpResponse.headers().firstValue(HttpHeaders.CONTENT_LENGTH).get());
+            assertEquals("", httpResponse.body());
+        }
+
+        @Test
+        public void should_use_size_from_message_body_writer_for_head_request() throws Exception {
+            OutboundResponse response = response().entity(new GenericEntity<>("entity", String.class),
+                    new Annotation[0]).build();
+            MessageBodyWriter<String> writer = mock(MessageBodyWriter.class);
+            when(writer.getSize(eq("entity"), eq(String.class), eq(String.class), any(), any())).thenReturn(42L);
+            when(providers.getMessageBodyWriter(eq(String.class), eq(String.class), any(), any()))
+                    .thenReturn((MessageBodyWriter) writer);
+            when(router.dispatch(any(), eq(resourceContext))).thenReturn(response);
+
+            HttpResponse<String> httpResponse = head("/test");
+
+            assertEquals("42", httpResponse.headers().firstValue(HttpHeaders.CONTENT_LENGTH).get());
+            verify(writer, never()).writeTo(any(), any(), any(), any(), any(), any(), any());
+        }
+
+        @Test
+        public void should_write_streaming_output_with_chunked_encoding() {
+            StreamingOutput output = stream -> stream.write("streaming".getBytes());
+            response().entity(new GenericEntity<>(output, StreamingOutput.class), new Annotation[0])
+                    .returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals("streaming", httpResponse.body());
+            assertEquals("chunked", httpResponse.headers().firstValue("Transfer-Encoding").get());
+            verify(providers, never()).getMessageBodyWriter(eq(StreamingOutput.class), any(), any(), any());
+        }
+
+        @Test
+        public void should_write_stream_elements_using_element_message_body_writer() {
+            AtomicBoolean closed = new AtomicBoolean();
+            Stream<String> stream = Stream.of("a", "b", "c").onClose(() -> closed.set(true));
+            response().entity(new GenericEntity<>(stream, new GenericType<Stream<String>>() {
+            }.getType()), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals("a\nb\nc\n", httpResponse.body());
+            assertEquals("chunked", httpResponse.headers().firstValue("Transfer-Encoding").get());
+            assertTrue(closed.get());
+        }
+
+        @Test
+        public void should_write_iterator_elements() {
+            Iterator<String> iterator = List.of("a", "b").iterator();
+            response().entity(new GenericEntity<>(iterator, new GenericType<Iterator<String>>() {
+            }.getType()), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals("a\nb\n", httpResponse.body());
+        }
+
+        @Test
+        public void should_write_stream_elements_as_json_array_for_json() {
+            Stream<String> stream = Stream.of("\"a\"", null, "\"b\"");
+            response().mediaType(MediaType.APPLICATION_JSON_TYPE).entity(new GenericEntity<>(stream,
+                    new GenericType<Stream<String>>() {
+                    }.getType()), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals("[\"a\",null,\"b\"]", httpResponse.body());
+        }
+
+        @Test
+        public void should_write_stream_elements_as_lines_for_ndjson() {
+            Stream<String> stream = Stream.of("\"a\"", null, "\"b\"");
+            response().mediaType(new MediaType("application", "x-ndjson")).entity(new GenericEntity<>(stream,
+                    new GenericType<Stream<String>>() {
+                    }.getType()), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals("\"a\"\nnull\n\"b\"\n", httpResponse.body());
+        }
+
+        @Test
+        public void should_abort_connection_if_stream_failed_after_response_committed() {
+            String element = "x".repeat(1024);
+            Stream<String> stream = Stream.iterate(0, i -> i + 1).map(i -> {
+                if (i == 256) {
+                    throw new IllegalStateException("failed");
+                }
+                return element;
+            });
+            response().entity(new GenericEntity<>(stream, new GenericType<Stream<String>>() {
+            }.getType()), new Annotation[0]).returnFrom(router);
+
+            assertThrows(RuntimeException.class, () -> get("/test"));
+        }
+
+        @Test
+        public void should_close_stream_without_writing_for_head_request() {
+            AtomicBoolean closed = new AtomicBoolean();
+            Stream<String> stream = Stream.of("a").onClose(() -> closed.set(true));
+            response().entity(new GenericEntity<>(stream, new GenericType<Stream<String>>() {
+            }.getType()), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = head("/test");
+
+            assertEquals(Response.Status.OK.getStatusCode(), httpResponse.statusCode());
+            assertTrue(closed.get());
+            verify(providers, never()).getMessageBodyWriter(eq(String.class), any(), any(), any());
+        }
+
+        @Test
+        public void should_send_file_entity_with_content_length_and_last_modified(@TempDir Path directory)
+                throws Exception {
+            Path file = Files.writeString(directory.resolve("report.csv"), "a,b\n1,2\n");
+            response().entity(new GenericEntity<>(file, Path.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals("a,b\n1,2\n", httpResponse.body());
+            assertEquals("8", httpResponse.headers().firstValue(HttpHeaders.CONTENT_LENGTH).get());
+            assertTrue(httpResponse.headers().firstValue(HttpHeaders.LAST_MODIFIED).isPresent());
+            verify(providers, never()).getMessageBodyWriter(eq(Path.class), any(), any(), any());
+        }
+
+        @Test
+        public void should_send_file_channel_from_its_position_and_close_it(@TempDir Path directory)
+                throws Exception {
+            Path file = Files.writeString(directory.resolve("report.csv"), "header\nbody");
+            FileChannel channel = FileChannel.open(file);
+            channel.position(7);
+            response().entity(new GenericEntity<>(channel, FileChannel.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals("body", httpResponse.body());
+            assertEquals("4", httpResponse.headers().firstValue(HttpHeaders.CONTENT_LENGTH).get());
+            // 客户端收到全部内容时，发送完成的回调可能还没有执行
+            for (int i = 0; i < 100 && channel.isOpen(); i++) {
+                Thread.sleep(10);
+            }
+            assertFalse(channel.isOpen());
+        }
+
+        @Test
+        public void should_send_mapped_buffer(@TempDir Path directory) throws Exception {
+            Path file = Files.writeString(directory.resolve("report.csv"), "x".repeat(100_000));
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            response().entity(new GenericEntity<>(buffer, MappedByteBuffer.class), new Annotation[0])
+                    .returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals("x".repeat(100_000), httpResponse.body());
+            assertEquals("100000", httpResponse.headers().firstValue(HttpHeaders.CONTENT_LENGTH).get());
+        }
+
+        @Test
+        public void should_set_file_length_without_sending_it_for_head_request(@TempDir Path directory)
+                throws Exception {
+            File file = Files.writeString(directory.resolve("report.csv"), "content").toFile();
+            response().entity(new GenericEntity<>(file, File.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = head("/test");
+
+            assertEquals("7", httpResponse.headers().firstValue(HttpHeaders.CONTENT_LENGTH).get());
+            assertTrue(httpResponse.headers().firstValue(HttpHeaders.LAST_MODIFIED).isPresent());
+            assertEquals("", httpResponse.body());
+        }
+
+        @Test
+        public void should_write_large_entity_through_write_listener() {
+            String entity = "x".repeat(ResourceServlet.ASYNC_WRITE_THRESHOLD * 3 + 7);
+            response().entity(new GenericEntity<>(entity, String.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals(Response.Status.OK.getStatusCode(), httpResponse.statusCode());
+            // 只缓冲 ASYNC_WRITE_THRESHOLD 字节，不会为了 Content-Length 缓冲整个实体
+            assertTrue(httpResponse.headers().firstValue(HttpHeaders.CONTENT_LENGTH).isEmpty());
+            assertEquals(entity, httpResponse.body());
+        }
+
+        @Test
+        public void should_release_container_thread_while_writing_large_entity() throws Exception {
+            assumeTrue(executor() == null && asyncSupported());
+            OutboundResponse response = response().entity(new GenericEntity<>("entity", String.class),
+                    new Annotation[0]).build();
+            AtomicReference<Thread> container = new AtomicReference<>();
+            AtomicReference<Thread> writing = new AtomicReference<>();
+            when(router.dispatch(any(), eq(resourceContext))).thenAnswer(invocation -> {
+                container.set(Thread.currentThread());
+                return response;
+            });
+            MessageBodyWriter<String> writer = mock(MessageBodyWriter.class);
+            when(writer.getSize(any(), any(), any(), any(), any())).thenReturn(-1L);
+            doAnswer(invocation -> {
+                writing.set(Thread.currentThread());
+                OutputStream stream = invocation.getArgument(6);
+                stream.write(new byte[ResourceServlet.ASYNC_WRITE_THRESHOLD * 3]);
+                return null;
+            }).when(writer).writeTo(any(), any(), any(), any(), any(), any(), any());
+            when(providers.getMessageBodyWriter(eq(String.class), eq(String.class), any(), any()))
+                    .thenReturn((MessageBodyWriter) writer);
+            writersReleased = new CompletableFuture<>();
+
+            CompletableFuture<HttpResponse<String>> sent = CompletableFuture.supplyAsync(() -> get("/test"));
+
+            // 实体还没有开始序列化，容器线程已经离开了 ResourceServlet
+            long deadline = System.currentTimeMillis() + 1000;
+            while (container.get() == null || inServlet(container.get())) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            assertNull(writing.get());
+
+            writersReleased.complete(null);
+            HttpResponse<String> httpResponse = sent.get(5, TimeUnit.SECONDS);
+
+            assertEquals(ResourceServlet.ASYNC_WRITE_THRESHOLD * 3, httpResponse.body().length());
+            assertEquals("entity-writer-test", writing.get().getName());
+        }
+
+        @Test
+        public void should_abort_connection_if_writer_failed_after_threshold() throws Exception {
+            OutboundResponse response = response().entity(new GenericEntity<>("entity", String.class),
+                    new Annotation[0]).build();
+            MessageBodyWriter<String> writer = mock(MessageBodyWriter.class);
+            when(writer.getSize(any(), any(), any(), any(), any())).thenReturn(-1L);
+            doAnswer(invocation -> {
+                OutputStream stream = invocation.getArgument(6);
+                stream.write(new byte[ResourceServlet.ASYNC_WRITE_THRESHOLD * 2]);
+                throw new IOException("failed");
+            }).when(writer).writeTo(any(), any(), any(), any(), any(), any(), any());
+            when(providers.getMessageBodyWriter(eq(String.class), eq(String.class), any(), any()))
+                    .thenReturn((MessageBodyWriter) writer);
+            when(router.dispatch(any(), eq(resourceContext))).thenReturn(response);
+
+            assertThrows(RuntimeException.class, () -> get("/test"));
+        }
+
+        @Test
+        public void should_set_content_length_for_entity_within_threshold() {
+            String entity = "x".repeat(ResourceServlet.ASYNC_WRITE_THRESHOLD);
+            response().entity(new GenericEntity<>(entity, String.class), new Annotation[0]).returnFrom(router);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals(String.valueOf(entity.length()),
+                    httpResponse.headers().firstValue(HttpHeaders.CONTENT_LENGTH).get());
+            assertEquals(entity, httpResponse.body());
+        }
+
+        @Test
+        public void should_write_response_when_suspended_response_resumed() {
+            OutboundResponse response = response().entity(new GenericEntity<>("resumed", String.class),
+                    new Annotation[0]).build();
+            DefaultAsyncResponse asyncResponse = new DefaultAsyncResponse();
+            CompletableFuture<OutboundResponse> future = new CompletableFuture<>();
+            when(router.dispatch(any(), eq(resourceContext))).thenAnswer(invocation -> {
+                CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS).execute(() -> future.complete(response));
+                return Responses.suspended(asyncResponse, future);
+            });
+            CompletionCallback callback = mock(CompletionCallback.class);
+            asyncResponse.register(callback);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals(Response.Status.OK.getStatusCode(), httpResponse.statusCode());
+            assertEquals("resumed", httpResponse.body());
+            verify(callback, timeout(1000)).onComplete(null);
+        }
+
+        @Test
+        public void should_respond_with_exception_when_suspended_response_failed() {
+            CompletableFuture<OutboundResponse> future = new CompletableFuture<>();
+            future.completeExceptionally(new StacklessWebApplicationException(Responses.SERVICE_UNAVAILABLE));
+            when(router.dispatch(any(), eq(resourceContext)))
+                    .thenReturn(Responses.suspended(new DefaultAsyncResponse(), future));
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), httpResponse.statusCode());
+        }
+
+        @Test
+        public void should_notify_completion_callback_with_failure_when_suspended_response_timed_out() {
+            DefaultAsyncResponse asyncResponse = new DefaultAsyncResponse();
+            CompletableFuture<OutboundResponse> future = new CompletableFuture<>();
+            asyncResponse.stage().whenComplete((value, error) -> future.completeExceptionally(error));
+            when(router.dispatch(any(), eq(resourceContext))).thenAnswer(invocation -> {
+                asyncResponse.setTimeout(50, TimeUnit.MILLISECONDS);
+                return Responses.suspended(asyncResponse, future);
+            });
+            CompletionCallback callback = mock(CompletionCallback.class);
+            asyncResponse.register(callback);
+
+            HttpResponse<String> httpResponse = get("/test");
+
+            assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), httpResponse.statusCode());
+            verify(callback, timeout(1000)).onComplete(any(StacklessWebApplicationException.class));
+        }
     }
 
     @TestFactory
@@ -273,6 +697,11 @@ public class ResourceServletTest extends ServletTest {
         return callers;
     }
 
+    private static boolean inServlet(Thread thread) {
+        return Arrays.stream(thread.getStackTrace())
+                .anyMatch(element -> element.getClassName().startsWith(ResourceServlet.class.getName()));
+    }
+
     private OutboundResponseBuilder response() {
         return new OutboundResponseBuilder();
     }
@@ -294,8 +723,13 @@ public class ResourceServletTest extends ServletTest {
             return this;
         }
 
-        public OutboundResponseBuilder entity(GenericEntity<Object> entity, Annotation[] annotations) {
-            this.entity = entity;
+        public OutboundResponseBuilder mediaType(MediaType mediaType) {
+            this.mediaType = mediaType;
+            return this;
+        }
+
+        public OutboundResponseBuilder entity(GenericEntity<?> entity, Annotation[] annotations) {
+            this.entity = (GenericEntity<Object>) entity;
             this.annotations = annotations;
             return this;
         }
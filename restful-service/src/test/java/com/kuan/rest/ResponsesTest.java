@@ -0,0 +1,67 @@
+package com.kuan.rest;
+
+import jakarta.ws.rs.NotAcceptableException;
+import jakarta.ws.rs.NotSupportedException;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ResponsesTest {
+
+    @Test
+    public void should_reuse_prebuilt_response_without_runtime_delegate() {
+        RuntimeDelegate delegate = mock(RuntimeDelegate.class);
+        RuntimeDelegate.setInstance(delegate);
+
+        assertSame(Responses.NOT_FOUND, Responses.status(404));
+        assertSame(Responses.NO_CONTENT, Responses.status(204));
+        assertSame(Responses.METHOD_NOT_ALLOWED, Responses.status(405));
+        assertSame(Responses.NOT_ACCEPTABLE, Responses.status(406));
+        verifyNoInteractions(delegate);
+    }
+
+    @Test
+    public void should_build_other_status_through_runtime_delegate() {
+        RuntimeDelegate delegate = mock(RuntimeDelegate.class);
+        RuntimeDelegate.setInstance(delegate);
+        when(delegate.createResponseBuilder()).thenReturn(new StubResponseBuilder());
+
+        Response response = Responses.status(409);
+
+        assertEquals(409, response.getStatus());
+        assertFalse(Responses.isPrebuilt(response));
+    }
+
+    @Test
+    public void should_not_modify_prebuilt_response() {
+        assertEquals(404, Responses.NOT_FOUND.getStatus());
+        assertEquals(Response.Status.NOT_FOUND, Responses.NOT_FOUND.getStatusInfo());
+        assertFalse(Responses.NOT_FOUND.hasEntity());
+        assertNull(Responses.NOT_FOUND.getGenericEntity());
+        assertTrue(Responses.NOT_FOUND.getHeaders().isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> Responses.NOT_FOUND.getHeaders().add("Allow", "GET"));
+    }
+
+    @Test
+    public void should_not_fill_stack_trace_of_stackless_exception() {
+        StacklessWebApplicationException exception = new StacklessWebApplicationException(404);
+
+        assertEquals(0, exception.getStackTrace().length);
+        assertSame(Responses.NOT_FOUND, exception.getResponse());
+        assertEquals("HTTP 404 Not Found", exception.getMessage());
+    }
+
+    @Test
+    public void should_throw_stackless_negotiation_exceptions() {
+        NotAcceptableException notAcceptable = Responses.notAcceptable();
+        NotSupportedException notSupported = Responses.notSupported();
+
+        assertEquals(0, notAcceptable.getStackTrace().length);
+        assertSame(Responses.NOT_ACCEPTABLE, notAcceptable.getResponse());
+        assertEquals(0, notSupported.getStackTrace().length);
+        assertSame(Responses.UNSUPPORTED_MEDIA_TYPE, notSupported.getResponse());
+    }
+}
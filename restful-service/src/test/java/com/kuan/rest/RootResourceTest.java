@@ -3,6 +3,7 @@ package com.kuan.rest;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.container.ResourceContext;
 import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriInfo;
@@ -64,31 +65,43 @@ public class RootResourceTest {
         ResourceRouter.Resource resource = new ResourceHandler(Messages.class);
         UriTemplate.MatchResult result = resource.getUriTemplate().match(path).get();
         ResourceRouter.ResourceMethod method = resource.match(result, httpMethod,
-                new String[]{MediaType.TEXT_PLAIN}, resourceContext, builder).get();
+                MediaTypes.accept(MediaType.TEXT_PLAIN), resourceContext, builder).get();
         assertEquals(resourceMethod, method.toString());
     }
 
+    @Test
+    public void should_not_build_path_parameters_when_matching_resource_method() {
+        ResourceRouter.Resource resource = new ResourceHandler(Messages.class);
+        UriTemplate.MatchResult result = Mockito.spy(resource.getUriTemplate().match("/messages/1/content").get());
+        DefaultUriInfoBuilder builder = new DefaultUriInfoBuilder("http", "localhost", 80, "", "/messages/1/content",
+                null);
+
+        assertTrue(resource.match(result, "GET", MediaTypes.accept(MediaType.TEXT_PLAIN), resourceContext, builder)
+                .isPresent());
+
+        Mockito.verify(result, Mockito.never()).getMatchedPathParameters();
+    }
+
     @Test
     public void should_match_resource_method_in_sub_resource() {
         ResourceRouter.Resource resource = new ResourceHandler(new Message(), Mockito.mock(UriTemplate.class));
         UriTemplate.MatchResult result = Mockito.mock(UriTemplate.MatchResult.class);
         when(result.getRemaining()).thenReturn("/content");
 
-        assertTrue(resource.match(result, "GET", new String[]{MediaType.TEXT_PLAIN},
+        assertTrue(resource.match(result, "GET", MediaTypes.accept(MediaType.TEXT_PLAIN),
                 resourceContext, Mockito.mock(UriInfoBuilder.class)).isPresent());
     }
 
     @ParameterizedTest(name = "{2}")
     @CsvSource(textBlock = """
             /missing-messages/1,        GET,      URI not matched
-            /missing-messages,          POST,     Http method not matched
             /missing-messages/sub/miss, POST,     No matched sub-resource method
             """)
     public void should_return_empty_if_not_matched(String uri, String httpMethod, String context) {
         UriInfoBuilder builder = new StubUriInfoBuilder();
         ResourceRouter.Resource resource = new ResourceHandler(MissingMessages.class);
         UriTemplate.MatchResult result = resource.getUriTemplate().match(uri).get();
-        assertTrue(resource.match(result, httpMethod, new String[]{MediaType.TEXT_PLAIN},
+        assertTrue(resource.match(result, httpMethod, MediaTypes.accept(MediaType.TEXT_PLAIN),
                         resourceContext, builder)
                 .isEmpty());
     }
@@ -101,7 +114,7 @@ public class RootResourceTest {
         ResourceHandler resource = new ResourceHandler(Messages.class);
         UriTemplate.MatchResult result = resource.getUriTemplate().match("/messages").get();
 
-        resource.match(result, "GET", new String[]{MediaType.TEXT_PLAIN}, resourceContext, uriInfoBuilder);
+        resource.match(result, "GET", MediaTypes.accept(MediaType.TEXT_PLAIN), resourceContext, uriInfoBuilder);
 
         assertTrue(uriInfoBuilder.getLastMatchedResource() instanceof Messages);
 
@@ -114,7 +127,7 @@ public class RootResourceTest {
         ResourceHandler resource = new ResourceHandler(Messages.class);
         UriTemplate.MatchResult result = resource.getUriTemplate().match("/messages/1").get();
 
-        resource.match(result, "GET", new String[]{MediaType.TEXT_PLAIN}, resourceContext, uriInfoBuilder);
+        resource.match(result, "GET", MediaTypes.accept(MediaType.TEXT_PLAIN), resourceContext, uriInfoBuilder);
 
         assertTrue(uriInfoBuilder.getLastMatchedResource() instanceof Message);
 
@@ -125,6 +138,15 @@ public class RootResourceTest {
     }
 
 
+    @Test
+    public void should_share_resource_model_between_handlers_of_same_resource_class() {
+        ResourceModel model = ResourceModel.of(Message.class, UriHandlers.Mode.LINEAR);
+
+        assertSame(model, ResourceModel.of(new Message().getClass(), UriHandlers.Mode.LINEAR));
+        assertNotSame(model, ResourceModel.of(Message.class, UriHandlers.Mode.COMBINED));
+        assertNotSame(model, ResourceModel.of(MessageBody.class, UriHandlers.Mode.LINEAR));
+    }
+
     @Test
     public void should_throw_illegal_argument_exception_if_root_resource_not_have_path_annotation() {
         assertThrows(IllegalArgumentException.class, () -> new ResourceHandler(Message.class));
@@ -185,6 +207,117 @@ public class RootResourceTest {
         assertEquals(Set.of(HttpMethod.POST, HttpMethod.OPTIONS), response.getAllowedMethods());
     }
 
+    @Test
+    public void should_share_allowed_methods_for_same_matched_methods() {
+        ResourceMethods resourceMethods = new ResourceMethods(Messages.class.getMethods());
+
+        assertEquals(Set.of(HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT, HttpMethod.DELETE, HttpMethod.PATCH,
+                HttpMethod.HEAD, HttpMethod.OPTIONS), resourceMethods.findAllowedMethods("/hello"));
+        assertEquals(Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS),
+                resourceMethods.findAllowedMethods("/topics/1234"));
+        assertEquals(Set.of(HttpMethod.OPTIONS), resourceMethods.findAllowedMethods("/missing"));
+        assertSame(resourceMethods.findAllowedMethods("/hello"), resourceMethods.findAllowedMethods("/hello"));
+    }
+
+    @Test
+    public void should_match_each_http_method_against_path_when_template_has_regex_variable() {
+        ResourceMethods resourceMethods = new ResourceMethods(Files.class.getMethods());
+
+        assertEquals(Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS),
+                resourceMethods.findAllowedMethods("/files/a/b"));
+        assertEquals(Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.DELETE, HttpMethod.OPTIONS),
+                resourceMethods.findAllowedMethods("/files/a"));
+        Response response = (Response) resourceMethods.findResourceMethods("/files/a/b", HttpMethod.DELETE).get()
+                .call(resourceContext, new StubUriInfoBuilder()).getEntity();
+        assertEquals(Response.Status.METHOD_NOT_ALLOWED.getStatusCode(), response.getStatus());
+        assertEquals("GET, HEAD, OPTIONS", response.getHeaderString(HttpHeaders.ALLOW));
+    }
+
+    @Test
+    public void should_prebuild_options_response_for_template_without_overlapping_templates() {
+        ResourceMethods resourceMethods = new ResourceMethods(Messages.class.getMethods());
+
+        Response response = (Response) resourceMethods.findResourceMethods("/head", HttpMethod.OPTIONS).get()
+                .call(resourceContext, new StubUriInfoBuilder()).getEntity();
+
+        assertEquals(Response.Status.NO_CONTENT.getStatusCode(), response.getStatus());
+        assertEquals("GET, HEAD, OPTIONS", response.getHeaderString(HttpHeaders.ALLOW));
+        assertSame(response, resourceMethods.findResourceMethods("/head", HttpMethod.OPTIONS).get()
+                .call(resourceContext, new StubUriInfoBuilder()).getEntity());
+    }
+
+    @Test
+    public void should_respond_method_not_allowed_with_allow_if_http_method_not_matched() {
+        UriInfoBuilder builder = new StubUriInfoBuilder();
+        ResourceRouter.Resource resource = new ResourceHandler(MissingMessages.class);
+        UriTemplate.MatchResult result = resource.getUriTemplate().match("/missing-messages").get();
+
+        Response response = (Response) resource.match(result, HttpMethod.POST, MediaTypes.ANY, resourceContext,
+                builder).get().call(resourceContext, builder).getEntity();
+
+        assertEquals(Response.Status.METHOD_NOT_ALLOWED.getStatusCode(), response.getStatus());
+        assertEquals(Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS), response.getAllowedMethods());
+        assertEquals("GET, HEAD, OPTIONS", response.getHeaderString(HttpHeaders.ALLOW));
+    }
+
+    @ParameterizedTest(name = "{3}")
+    @CsvSource(textBlock = """
+            GET,  'application/json',                  '',                 Documents.json,       Accept exactly matched
+            GET,  'text/plain;q=0.5, application/json', '',                Documents.json,       Higher quality preferred
+            GET,  'text/*',                            '',                 Documents.text,       Accept range matched
+            GET,  '*/*;q=0.1, text/plain;q=0',         '',                 Documents.json,       Excluded by more specific range
+            POST, '',                                  'application/json', Documents.createJson, Content-Type matched
+            POST, '',                                  'text/plain',       Documents.createText, Content-Type matched another
+            """)
+    public void should_negotiate_resource_method_by_media_types(String httpMethod, String accept, String contentType,
+                                                                String resourceMethod, String context) {
+        ResourceMethods resourceMethods = new ResourceMethods(Documents.class.getMethods());
+
+        ResourceRouter.ResourceMethod method = resourceMethods.findResourceMethods("", httpMethod,
+                MediaTypes.of(accept, contentType)).get();
+
+        assertEquals(resourceMethod, method.toString());
+    }
+
+    @Test
+    public void should_throw_not_acceptable_or_not_supported_if_no_resource_method_negotiated() {
+        RuntimeDelegate delegate = mock(RuntimeDelegate.class);
+        RuntimeDelegate.setInstance(delegate);
+        when(delegate.createResponseBuilder()).thenAnswer(i -> new StubResponseBuilder());
+
+        ResourceMethods resourceMethods = new ResourceMethods(Documents.class.getMethods());
+
+        assertThrows(NotAcceptableException.class, () -> resourceMethods.findResourceMethods("", HttpMethod.GET,
+                MediaTypes.of("image/png", null)));
+        assertThrows(NotSupportedException.class, () -> resourceMethods.findResourceMethods("", HttpMethod.POST,
+                MediaTypes.of(null, "image/png")));
+    }
+
+    @Path("/documents")
+    static class Documents {
+        @GET
+        @Produces(MediaType.TEXT_PLAIN)
+        public String text() {
+            return "text";
+        }
+
+        @GET
+        @Produces(MediaType.APPLICATION_JSON)
+        public String json() {
+            return "{}";
+        }
+
+        @POST
+        @Consumes(MediaType.APPLICATION_JSON)
+        public void createJson() {
+        }
+
+        @POST
+        @Consumes(MediaType.TEXT_PLAIN)
+        public void createText() {
+        }
+    }
+
     @Path("/missing-messages")
     static class MissingMessages {
         @GET
@@ -200,6 +333,19 @@ public class RootResourceTest {
 
     }
 
+    static class Files {
+        @GET
+        @Path("/files/{path:.+}")
+        public String get() {
+            return "file";
+        }
+
+        @DELETE
+        @Path("/files/{id}")
+        public void delete() {
+        }
+    }
+
     @Path("/messages")
     static class Messages {
         @GET
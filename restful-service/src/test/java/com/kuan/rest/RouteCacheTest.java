@@ -0,0 +1,150 @@
+package com.kuan.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.ext.RuntimeDelegate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Vector;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class RouteCacheTest {
+    private Runtime runtime;
+    private ResourceContext context;
+    private StubUriInfoBuilder builder;
+    private RouteCache cache;
+    private ResourceRouter router;
+
+    @BeforeEach
+    public void before() {
+        RuntimeDelegate delegate = mock(RuntimeDelegate.class);
+        RuntimeDelegate.setInstance(delegate);
+        when(delegate.createResponseBuilder()).thenAnswer(i -> new StubResponseBuilder());
+
+        runtime = mock(Runtime.class);
+        context = mock(ResourceContext.class);
+        when(context.getResource(eq(Messages.class))).thenAnswer(i -> new Messages());
+        when(runtime.createUriInfoBuilder(any())).thenAnswer(i -> builder = new StubUriInfoBuilder());
+
+        cache = new RouteCache(10);
+        router = new DefaultResourceRoot(runtime, List.of(new ResourceHandler(Messages.class)),
+                UriHandlers.Mode.LINEAR, cache);
+    }
+
+    @Test
+    public void should_replay_cached_route_for_same_method_and_path() {
+        OutboundResponse first = router.dispatch(request("GET", "/messages/hello"), context);
+        OutboundResponse second = router.dispatch(request("GET", "/messages/hello"), context);
+
+        assertEquals("hello", first.getGenericEntity().getEntity());
+        assertEquals("hello", second.getGenericEntity().getEntity());
+
+        assertInstanceOf(Messages.class, builder.getLastMatchedResource());
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.size());
+        verify(context, times(2)).getResource(eq(Messages.class));
+    }
+
+    @Test
+    public void should_replay_deterministic_sub_resource_locator() {
+        router.dispatch(request("GET", "/messages/1/content"), context);
+        OutboundResponse response = router.dispatch(request("GET", "/messages/1/content"), context);
+
+        assertEquals("content", response.getGenericEntity().getEntity());
+        assertInstanceOf(Message.class, builder.getLastMatchedResource());
+        assertEquals(List.of("1"), builder.getPathParameters().get("id"));
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void should_not_cache_route_through_non_deterministic_sub_resource_locator() {
+        router.dispatch(request("GET", "/messages/bodies/content"), context);
+        router.dispatch(request("GET", "/messages/bodies/content"), context);
+
+        assertEquals(0, cache.hits());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void should_not_cache_unmatched_route() {
+        assertEquals(404, router.dispatch(request("GET", "/messages/1/missing"), context).getStatus());
+        assertEquals(405, router.dispatch(request("POST", "/messages/hello"), context).getStatus());
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void should_evict_routes_not_referenced_since_last_eviction() {
+        RouteCache cache = new RouteCache(2);
+        RouteCache.Route route = new RouteCache.Route(List.of(), mock(ResourceRouter.ResourceMethod.class));
+
+        cache.put("GET", "/1", MediaTypes.ANY, route);
+        cache.put("GET", "/2", MediaTypes.ANY, route);
+        cache.get("GET", "/1", MediaTypes.ANY);
+        cache.put("GET", "/3", MediaTypes.ANY, route);
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.get("GET", "/1", MediaTypes.ANY).isPresent());
+        assertTrue(cache.get("GET", "/2", MediaTypes.ANY).isEmpty());
+        assertTrue(cache.get("GET", "/3", MediaTypes.ANY).isPresent());
+    }
+
+    @Test
+    public void should_not_share_cached_route_between_different_media_types() {
+        RouteCache.Route route = new RouteCache.Route(List.of(), mock(ResourceRouter.ResourceMethod.class));
+
+        cache.put("GET", "/1", MediaTypes.accept(MediaType.TEXT_PLAIN), route);
+
+        assertTrue(cache.get("GET", "/1", MediaTypes.accept(MediaType.TEXT_PLAIN)).isPresent());
+        assertTrue(cache.get("GET", "/1", MediaTypes.accept(MediaType.APPLICATION_JSON)).isEmpty());
+        assertTrue(cache.get("GET", "/1", MediaTypes.ANY).isEmpty());
+    }
+
+    private HttpServletRequest request(String method, String path) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getServletPath()).thenReturn(path);
+        when(request.getMethod()).thenReturn(method);
+        when(request.getHeaders(eq(HttpHeaders.ACCEPT)))
+                .thenReturn(new Vector<>(List.of(MediaType.WILDCARD)).elements());
+        return request;
+    }
+
+    @Path("/messages")
+    public static class Messages {
+        @GET
+        @Path("/hello")
+        public String hello() {
+            return "hello";
+        }
+
+        @Path("/{id}")
+        @Deterministic
+        public Message message() {
+            return new Message();
+        }
+
+        @Path("/bodies")
+        public Message body() {
+            return new Message();
+        }
+    }
+
+    public static class Message {
+        @GET
+        @Path("/content")
+        public String content() {
+            return "content";
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.kuan.rest;
+
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.MediaType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RouteTableTest {
+
+    @TempDir
+    Path routes;
+
+    @Test
+    public void should_load_resource_methods_and_locators_generated_at_compile_time() {
+        RouteTable.Routes routes = RouteTable.routes().find(RootResourceTest.Messages.class).get();
+
+        assertEquals(Arrays.stream(RootResourceTest.Messages.class.getMethods())
+                        .filter(m -> m.isAnnotationPresent(jakarta.ws.rs.GET.class)).count(),
+                routes.methods().stream().filter(m -> m.getHttpMethod().equals("GET")).count());
+        assertEquals(List.of("getById"), routes.locators().stream().map(m -> m.getName()).toList());
+    }
+
+    @Test
+    public void should_create_root_resources_from_route_table() {
+        ResourceContext context = mock(ResourceContext.class);
+        when(context.getResource(RootResourceTest.Messages.class)).thenReturn(new RootResourceTest.Messages());
+
+        ResourceRouter.Resource resource = RouteTable.routes().rootResources(UriHandlers.Mode.LINEAR).stream()
+                .filter(r -> r.getUriTemplate().match("/messages/hello").isPresent())
+                .findFirst().get();
+        UriTemplate.MatchResult result = resource.getUriTemplate().match("/messages/hello").get();
+
+        ResourceRouter.ResourceMethod method = resource.match(result, "GET", MediaTypes.accept(MediaType.TEXT_PLAIN),
+                context, new StubUriInfoBuilder()).get();
+
+        assertEquals("Messages.hello", method.toString());
+    }
+
+    @Test
+    public void should_not_use_route_table_if_method_not_found_in_resource_class() throws IOException {
+        Path file = routes.resolve(RouteTable.ROUTES);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, String.join("\t", "method", RootResourceTest.Messages.class.getName(),
+                "removed", "java.lang.String", "GET", "/removed", "", "") + "\n");
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{routes.toUri().toURL()}, null)) {
+            assertTrue(RouteTable.load(loader).find(RootResourceTest.Messages.class).isEmpty());
+        }
+    }
+}
@@ -29,7 +29,9 @@ public abstract class ServletTest {
         server.addConnector(connector);
 
         ServletContextHandler handler = new ServletContextHandler(server, "/");
-        handler.addServlet(new ServletHolder(getServlet()), "/");
+        ServletHolder holder = new ServletHolder(getServlet());
+        holder.setAsyncSupported(asyncSupported());
+        handler.addServlet(holder, "/");
 
         server.setHandler(handler);
         server.start();
@@ -42,6 +44,10 @@ public abstract class ServletTest {
 
     protected abstract Servlet getServlet();
 
+    protected boolean asyncSupported() {
+        return true;
+    }
+
     protected URI path(String path) throws Exception {
         String base = "http://localhost:" + port + "/";
         return new URL(new URL(base), path).toURI();
@@ -59,4 +65,15 @@ public abstract class ServletTest {
         }
     }
 
+    public HttpResponse<String> head(String path) {
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest request = HttpRequest.newBuilder(path(path))
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
+            return client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
 }
\ No newline at end of file
@@ -70,7 +70,7 @@ public class SubResourceLocatorTest extends InjectableCallerTest {
         try {
             SubResourceLocators.SubResourceLocator locator =
                     new SubResourceLocators.SubResourceLocator(SubResourceMethods.class.getMethod(method, type));
-            locator.match(result, "GET", new String[0], context, builder);
+            locator.match(result, "GET", MediaTypes.ANY, context, builder);
         } catch (NoSuchMethodException e) {
             throw new RuntimeException(e);
         }
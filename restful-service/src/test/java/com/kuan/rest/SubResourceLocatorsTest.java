@@ -28,7 +28,7 @@ public class SubResourceLocatorsTest {
 
         SubResourceLocators locators = new SubResourceLocators(Messages.class.getMethods());
 
-        assertTrue(locators.findSubResourceMethods(path, "GET", new String[]{MediaType.TEXT_PLAIN},
+        assertTrue(locators.findSubResourceMethods(path, "GET", MediaTypes.accept(MediaType.TEXT_PLAIN),
                 Mockito.mock(ResourceContext.class), builder).isPresent());
 
         assertEquals(message, ((Message) builder.getLastMatchedResource()).message);
@@ -44,7 +44,7 @@ public class SubResourceLocatorsTest {
 
         SubResourceLocators locators = new SubResourceLocators(Messages.class.getMethods());
 
-        assertFalse(locators.findSubResourceMethods(path, "GET", new String[]{MediaType.TEXT_PLAIN},
+        assertFalse(locators.findSubResourceMethods(path, "GET", MediaTypes.accept(MediaType.TEXT_PLAIN),
                 Mockito.mock(ResourceContext.class), builder).isPresent());
     }
 
@@ -0,0 +1,123 @@
+package com.kuan.rest;
+
+import jakarta.ws.rs.container.ResourceContext;
+import jakarta.ws.rs.core.MediaType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+public class UriTemplateAutomatonTest {
+
+    private static final List<String> templates = List.of(
+            "/users", "/users/{id}", "/users/1234", "/users/{id:[0-9]+}", "/{resources}/1234/{action}",
+            "/users/{id}/order", "/orders/{id}.json", "/files/{path:.+}", "", "/users/{id}/orders/{orderId}",
+            "/topics", "/topics/{id}", "/topics/{id}/{action}");
+
+    @ParameterizedTest
+    @CsvSource(textBlock = """
+            /users,                     /users
+            /users/1,                   /users/{id:[0-9]+}
+            /users/1234,                /users/1234
+            /users/john,                /users/{id}
+            /users/john/order,          /users/{id}/order
+            /orders/1234/cancel,        /{resources}/1234/{action}
+            /users/john/orders/1,       /users/{id}/orders/{orderId}
+            /orders/1.json,             /orders/{id}.json
+            /files/a/b/c.txt,           /files/{path:.+}
+            /topics/1/comments/2,       /topics/{id}/{action}
+            /customers,                 ''
+            """)
+    public void should_match_same_template_as_linear_scan(String path, String expected) {
+        List<UriTemplateTrieTest.Handler> handlers = templates.stream().map(UriTemplateTrieTest.Handler::new).toList();
+
+        UriHandlers.Result<UriTemplateTrieTest.Handler> combined =
+                UriHandlers.Mode.COMBINED.compile(handlers).matched(path, r -> true).get();
+        UriHandlers.Result<UriTemplateTrieTest.Handler> linear =
+                UriHandlers.linear(handlers).matched(path, r -> true).get();
+
+        assertEquals(expected, combined.handler().template());
+        assertSame(linear.handler(), combined.handler());
+        assertEquals(linear.matched().get().getMatched(), combined.matched().get().getMatched());
+        assertEquals(linear.matched().get().getRemaining(), combined.matched().get().getRemaining());
+        assertEquals(linear.matched().get().getMatchedPathParameters(),
+                combined.matched().get().getMatchedPathParameters());
+    }
+
+    @Test
+    public void should_build_match_result_from_group_offsets_of_matched_template() {
+        List<UriTemplateTrieTest.Handler> handlers = templates.stream().map(UriTemplateTrieTest.Handler::new).toList();
+
+        UriTemplate.MatchResult result = UriHandlers.Mode.COMBINED.compile(handlers)
+                .matched("/users/john/orders/1/items", r -> true).get().matched().get();
+
+        assertEquals("/users/john/orders/1", result.getMatched());
+        assertEquals("/items", result.getRemaining());
+        assertEquals(Map.of("id", "john", "orderId", "1"), result.getMatchedPathParameters());
+    }
+
+    @Test
+    public void should_only_match_templates_without_remaining_if_fully_matched() {
+        List<UriTemplateTrieTest.Handler> handlers = List.of(new UriTemplateTrieTest.Handler(""),
+                new UriTemplateTrieTest.Handler("/users/{id}"), new UriTemplateTrieTest.Handler("/users"));
+
+        UriHandlers.Result<UriTemplateTrieTest.Handler> result =
+                UriHandlers.Mode.COMBINED.compile(handlers).fullyMatched("/users").get();
+
+        assertEquals("/users", result.handler().template());
+        assertNull(result.matched().get().getRemaining());
+        assertTrue(UriHandlers.Mode.COMBINED.compile(handlers).fullyMatched("/users/1/orders").isEmpty());
+    }
+
+    @Test
+    public void should_try_templates_with_lower_precedence_if_match_function_rejected() {
+        List<UriTemplateTrieTest.Handler> handlers = List.of(new UriTemplateTrieTest.Handler("/users/{id}"),
+                new UriTemplateTrieTest.Handler("/users"));
+
+        Optional<UriHandlers.Result<UriTemplateTrieTest.Handler>> result = UriHandlers.Mode.COMBINED.compile(handlers)
+                .matched("/users/1/orders", r -> r.getMatchedPathParameters().isEmpty());
+
+        assertEquals("/users", result.get().handler().template());
+    }
+
+    @Test
+    public void should_only_try_templates_sharing_first_literal_segment_or_without_one() {
+        List<UriTemplateTrieTest.Handler> handlers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            handlers.add(new UriTemplateTrieTest.Handler("/resources" + i));
+            handlers.add(new UriTemplateTrieTest.Handler("/resources" + i + "/{id}/items/{item:[0-9]+}"));
+        }
+        handlers.add(new UriTemplateTrieTest.Handler("/{any}/1234"));
+        UriHandlers.Matcher<UriTemplateTrieTest.Handler> combined = UriHandlers.Mode.COMBINED.compile(handlers);
+
+        assertEquals("/resources99/{id}/items/{item:[0-9]+}",
+                combined.matched("/resources99/1234/items/42", r -> true).get().handler().template());
+        assertSame(UriHandlers.linear(handlers).fullyMatched("/resources99/1234").get().handler(),
+                combined.fullyMatched("/resources99/1234").get().handler());
+        assertEquals("/{any}/1234", combined.matched("/customers/1234", r -> true).get().handler().template());
+        assertTrue(combined.matched("/customers/1", r -> true).isEmpty());
+    }
+
+    @Test
+    public void should_match_resource_methods_in_combined_mode() {
+        ResourceContext resourceContext = Mockito.mock(ResourceContext.class);
+        when(resourceContext.getResource(RootResourceTest.Messages.class)).thenReturn(new RootResourceTest.Messages());
+
+        ResourceRouter.Resource resource = new ResourceHandler(RootResourceTest.Messages.class,
+                UriHandlers.Mode.COMBINED);
+        UriTemplate.MatchResult result = resource.getUriTemplate().match("/messages/topics/1234").get();
+
+        ResourceRouter.ResourceMethod method = resource.match(result, "GET", MediaTypes.accept(MediaType.TEXT_PLAIN),
+                resourceContext, new StubUriInfoBuilder()).get();
+
+        assertEquals("Messages.topic1234", method.toString());
+    }
+}
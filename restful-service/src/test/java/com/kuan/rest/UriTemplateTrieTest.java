@@ -0,0 +1,99 @@
+package com.kuan.rest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class UriTemplateTrieTest {
+
+    private static final List<String> templates = List.of(
+            "/users", "/users/{id}", "/users/1234", "/users/{id:[0-9]+}", "/{resources}/1234/{action}",
+            "/users/{id}/order", "/orders/{id}.json", "/files/{path:.+}", "", "/users/{id}/orders/{orderId}",
+            "/topics", "/topics/{id}", "/topics/{id}/{action}");
+
+    @ParameterizedTest
+    @CsvSource(textBlock = """
+            /users,                     /users
+            /users/1,                   /users/{id:[0-9]+}
+            /users/1234,                /users/1234
+            /users/john,                /users/{id}
+            /users/john/order,          /users/{id}/order
+            /users/1234/order,          /users/{id}/order
+            /orders/1234/cancel,        /{resources}/1234/{action}
+            /users/john/orders/1,       /users/{id}/orders/{orderId}
+            /orders/1.json,             /orders/{id}.json
+            /files/a/b/c.txt,           /files/{path:.+}
+            /topics/1/comments/2,       /topics/{id}/{action}
+            /customers,                 ''
+            """)
+    public void should_match_same_template_as_linear_scan(String path, String expected) {
+        List<Handler> handlers = templates.stream().map(Handler::new).toList();
+
+        Optional<UriHandlers.Result<Handler>> trie = UriHandlers.Mode.TRIE.compile(handlers).matched(path, r -> true);
+        Optional<UriHandlers.Result<Handler>> linear = UriHandlers.linear(handlers).matched(path, r -> true);
+
+        assertEquals(expected, trie.get().handler().template);
+        assertSame(linear.get().handler(), trie.get().handler());
+    }
+
+    @Test
+    public void should_keep_remaining_path_in_match_result() {
+        List<Handler> handlers = templates.stream().map(Handler::new).toList();
+
+        UriTemplate.MatchResult result = UriHandlers.Mode.TRIE.compile(handlers)
+                .matched("/topics/1/comments/2/likes", r -> true).get().matched().get();
+
+        assertEquals("/topics/1/comments", result.getMatched());
+        assertEquals("/2/likes", result.getRemaining());
+    }
+
+    @Test
+    public void should_apply_match_function_before_choosing_handler() {
+        List<Handler> handlers = List.of(new Handler("/users"), new Handler("/users/{id}"));
+
+        Optional<UriHandlers.Result<Handler>> result = UriHandlers.Mode.TRIE.compile(handlers)
+                .matched("/users/1/orders", r -> r.getRemaining() == null);
+
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void should_prefer_first_handler_if_precedence_equal() {
+        Handler first = new Handler("/users/{id}");
+        Handler second = new Handler("/users/{name}");
+
+        assertSame(first, UriHandlers.Mode.TRIE.compile(List.of(first, second))
+                .matched("/users/1", r -> true).get().handler());
+    }
+
+    @Test
+    public void should_return_empty_if_no_template_matched() {
+        List<Handler> handlers = List.of(new Handler("/users"), new Handler("/orders/{id}"));
+
+        assertTrue(UriHandlers.Mode.TRIE.compile(handlers).matched("/customers/1", r -> true).isEmpty());
+    }
+
+    @Test
+    public void should_fall_back_to_linear_scan_for_other_uri_templates() {
+        UriHandler handler = () -> mock(UriTemplate.class);
+
+        assertFalse(UriHandlers.Mode.TRIE.compile(List.of(handler)) instanceof UriTemplateTrie);
+    }
+
+    record Handler(String template, UriTemplate uriTemplate) implements UriHandler {
+        Handler(String template) {
+            this(template, new PathUriTemplate(template));
+        }
+
+        @Override
+        public UriTemplate getUriTemplate() {
+            return uriTemplate;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.kuan.rest.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 编译期生成路由表，运行时按表里的方法签名直接查找 Method，不再反射扫描资源类的全部方法和注解。
+ * <p>
+ * 路由表每行一条记录，字段之间用 tab 分隔：
+ * <pre>
+ * resource  类名  模板
+ * method    类名  方法名  参数类型  HTTP 方法  模板  @Produces  @Consumes
+ * locator   类名  方法名  参数类型  模板
+ * </pre>
+ * 类名都是 binary name，参数类型之间用逗号分隔，@Produces / @Consumes 已经合并了类上的标注。
+ * <p>
+ * 同时为声明了资源方法或子资源定位器的类生成 com.kuan.rest.GeneratedInvokers 的实现（资源类的 binary name 加上
+ * $$Invokers），按方法签名返回直接调用该方法的 invoker。资源类是 private 的时候无法直接调用，不生成。
+ */
+@SupportedAnnotationTypes("*")
+public class RouteTableProcessor extends AbstractProcessor {
+    static final String ROUTES = "META-INF/com.kuan.rest/routes";
+
+    private static final String PATH = "jakarta.ws.rs.Path";
+    private static final String HTTP_METHOD = "jakarta.ws.rs.HttpMethod";
+    private static final String PRODUCES = "jakarta.ws.rs.Produces";
+    private static final String CONSUMES = "jakarta.ws.rs.Consumes";
+    private static final String INVOKERS = "com.kuan.rest.GeneratedInvokers";
+    private static final String SUFFIX = "$$Invokers";
+
+    private final Set<String> routes = new LinkedHashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            collect(type);
+        }
+        if (roundEnv.processingOver() && !routes.isEmpty()) {
+            write();
+        }
+        return false;
+    }
+
+    private void collect(TypeElement type) {
+        String name = processingEnv.getElementUtils().getBinaryName(type).toString();
+        if (type.getKind() == ElementKind.CLASS) {
+            value(type, PATH).ifPresent(path -> add("resource", name, path));
+        }
+        List<ExecutableElement> invokable = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            if (!method.getModifiers().contains(Modifier.PUBLIC) || method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            String methodName = method.getSimpleName().toString();
+            Optional<String> path = value(method, PATH);
+            Optional<String> httpMethod = httpMethod(method);
+            if (httpMethod.isPresent()) {
+                add("method", name, methodName, parameters(method), httpMethod.get(), path.orElse(""),
+                        mediaTypes(method, PRODUCES), mediaTypes(method, CONSUMES));
+            } else if (path.isPresent()) {
+                add("locator", name, methodName, parameters(method), path.get());
+            } else {
+                continue;
+            }
+            // 运行时按 Method 的声明类查找 invoker，继承来的方法由父类的 invoker 负责
+            if (method.getEnclosingElement().equals(type)) {
+                invokable.add(method);
+            }
+        }
+        if (!invokable.isEmpty() && isAccessible(type)) {
+            generate(type, name, invokable);
+        }
+        for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+            collect(nested);
+        }
+    }
+
+    private void add(String... fields) {
+        routes.add(String.join("\t", fields));
+    }
+
+    private void write() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", ROUTES);
+            try (Writer writer = file.openWriter()) {
+                for (String route : routes) {
+                    writer.write(route);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "can not write " + ROUTES + ": " + e);
+        }
+    }
+
+    private static boolean isAccessible(TypeElement type) {
+        for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type, String name, List<ExecutableElement> methods) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String className = (packageName.isEmpty() ? name : name.substring(packageName.length() + 1)) + SUFFIX;
+        String resource = processingEnv.getTypeUtils().erasure(type.asType()).toString();
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n")
+                .append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+                .append("public final class ").append(className).append(" implements ").append(INVOKERS)
+                .append(" {\n")
+                .append("    @Override\n")
+                .append("    public ").append(INVOKERS).append(".Invoker invoker(String signature) {\n")
+                .append("        switch (signature) {\n");
+        for (int i = 0; i < methods.size(); i++) {
+            ExecutableElement method = methods.get(i);
+            source.append("            case \"").append(method.getSimpleName()).append('(')
+                    .append(parameters(method)).append(")\":\n")
+                    .append("                return new Invoker").append(i).append("();\n");
+        }
+        source.append("            default:\n")
+                .append("                return null;\n")
+                .append("        }\n")
+                .append("    }\n");
+        for (int i = 0; i < methods.size(); i++) {
+            ExecutableElement method = methods.get(i);
+            String call = "((" + resource + ") resource)." + method.getSimpleName() + "(" + arguments(method) + ")";
+            source.append("\n")
+                    .append("    private static final class Invoker").append(i).append(" implements ").append(INVOKERS)
+                    .append(".Invoker {\n")
+                    .append("        @Override\n")
+                    .append("        public Object invoke(Object resource, Object[] arguments) throws Throwable {\n");
+            if (method.getReturnType().getKind() == TypeKind.VOID) {
+                source.append("            ").append(call).append(";\n")
+                        .append("            return null;\n");
+            } else {
+                source.append("            return ").append(call).append(";\n");
+            }
+            source.append("        }\n")
+                    .append("    }\n");
+        }
+        source.append("}\n");
+
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+            writer.write(source.toString());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "can not write " + qualifiedName + ": " + e,
+                    type);
+        }
+    }
+
+    // 参数按声明类型强制转换，基本类型直接从包装类型拆箱
+    private String arguments(ExecutableElement method) {
+        List<? extends VariableElement> parameters = method.getParameters();
+        StringBuilder arguments = new StringBuilder();
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                arguments.append(", ");
+            }
+            arguments.append('(').append(processingEnv.getTypeUtils().erasure(parameters.get(i).asType()))
+                    .append(") arguments[").append(i).append(']');
+        }
+        return arguments.toString();
+    }
+
+    private Optional<String> httpMethod(ExecutableElement method) {
+        return method.getAnnotationMirrors().stream()
+                .map(a -> value(a.getAnnotationType().asElement(), HTTP_METHOD))
+                .flatMap(Optional::stream)
+                .findFirst();
+    }
+
+    // 方法上没有标注时使用声明该方法的类上的标注，和运行时 method.getDeclaringClass() 的规则一致
+    private String mediaTypes(ExecutableElement method, String annotation) {
+        return values(method, annotation)
+                .or(() -> values(method.getEnclosingElement(), annotation))
+                .map(values -> String.join(",", values))
+                .orElse("");
+    }
+
+    private String parameters(ExecutableElement method) {
+        return method.getParameters().stream()
+                .map(p -> typeName(processingEnv.getTypeUtils().erasure(p.asType())))
+                .collect(Collectors.joining(","));
+    }
+
+    private String typeName(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            return typeName(((ArrayType) type).getComponentType()) + "[]";
+        }
+        if (type.getKind() == TypeKind.DECLARED) {
+            TypeElement element = (TypeElement) processingEnv.getTypeUtils().asElement(type);
+            return processingEnv.getElementUtils().getBinaryName(element).toString();
+        }
+        return type.toString();
+    }
+
+    private Optional<String> value(Element element, String annotation) {
+        return annotationValue(element, annotation).map(value -> value.getValue().toString());
+    }
+
+    private Optional<List<String>> values(Element element, String annotation) {
+        return annotationValue(element, annotation).map(value -> ((List<?>) value.getValue()).stream()
+                .map(v -> ((AnnotationValue) v).getValue().toString())
+                .toList());
+    }
+
+    private Optional<? extends AnnotationValue> annotationValue(Element element, String annotation) {
+        return element.getAnnotationMirrors().stream()
+                .filter(a -> ((TypeElement) a.getAnnotationType().asElement()).getQualifiedName()
+                        .contentEquals(annotation))
+                .findFirst()
+                .flatMap(a -> processingEnv.getElementUtils().getElementValuesWithDefaults(a).entrySet().stream()
+                        .filter(e -> e.getKey().getSimpleName().contentEquals("value"))
+                        .map(Map.Entry::getValue)
+                        .findFirst());
+    }
+}
@@ -0,0 +1,178 @@
+package com.kuan.rest.processor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouteTableProcessorTest {
+
+    @TempDir
+    Path output;
+
+    @Test
+    public void should_generate_route_table_for_resource_methods_and_sub_resource_locators() throws IOException {
+        List<String> routes = compile("com.example.Messages", """
+                package com.example;
+
+                import jakarta.ws.rs.*;
+
+                @Path("/messages")
+                @Produces("text/plain")
+                public class Messages {
+                    @GET
+                    public String all() {
+                        return "all";
+                    }
+
+                    @POST
+                    @Path("/{id}")
+                    @Consumes({"application/json", "text/plain"})
+                    @Produces("application/json")
+                    public String update(@PathParam("id") int id, String[] body) {
+                        return "update";
+                    }
+
+                    @Path("/{id}/body")
+                    public Body body(@PathParam("id") String id) {
+                        return new Body();
+                    }
+
+                    public String notResource() {
+                        return "";
+                    }
+
+                    public static class Body {
+                        @GET
+                        @Path("/content")
+                        public String content() {
+                            return "content";
+                        }
+                    }
+                }
+                """);
+
+        assertEquals(List.of(
+                "resource\tcom.example.Messages\t/messages",
+                "method\tcom.example.Messages\tall\t\tGET\t\ttext/plain\t",
+                "method\tcom.example.Messages\tupdate\tint,java.lang.String[]\tPOST\t/{id}\tapplication/json"
+                        + "\tapplication/json,text/plain",
+                "locator\tcom.example.Messages\tbody\tjava.lang.String\t/{id}/body",
+                "method\tcom.example.Messages$Body\tcontent\t\tGET\t/content\t\t"), routes);
+    }
+
+    @Test
+    public void should_generate_invokers_calling_resource_methods_and_sub_resource_locators_directly()
+            throws IOException {
+        compile("com.example.Messages", """
+                package com.example;
+
+                import jakarta.ws.rs.*;
+                import java.util.List;
+
+                @Path("/messages")
+                public class Messages {
+                    @GET
+                    public String all() {
+                        return "all";
+                    }
+
+                    @DELETE
+                    @Path("/{id}")
+                    public void delete(@PathParam("id") int id, @QueryParam("tag") List<String> tags) {
+                    }
+
+                    @Path("/{id}/body")
+                    public Body body(@PathParam("id") String id) {
+                        return new Body();
+                    }
+
+                    public static class Body {
+                        @GET
+                        public String content() {
+                            return "content";
+                        }
+                    }
+
+                    private static class Hidden {
+                        @GET
+                        public String content() {
+                            return "hidden";
+                        }
+                    }
+                }
+                """);
+
+        String messages = Files.readString(output.resolve("com/example/Messages$$Invokers.java"));
+        assertTrue(messages.contains("public final class Messages$$Invokers implements com.kuan.rest.GeneratedInvokers"));
+        assertTrue(messages.contains("case \"all()\":"));
+        assertTrue(messages.contains("case \"delete(int,java.util.List)\":"));
+        assertTrue(messages.contains("case \"body(java.lang.String)\":"));
+        assertTrue(messages.contains("return ((com.example.Messages) resource).all();"));
+        assertTrue(messages.contains("((com.example.Messages) resource).delete((int) arguments[0], "
+                + "(java.util.List) arguments[1]);\n            return null;"));
+
+        String body = Files.readString(output.resolve("com/example/Messages$Body$$Invokers.java"));
+        assertTrue(body.contains("return ((com.example.Messages.Body) resource).content();"));
+
+        assertFalse(Files.exists(output.resolve("com/example/Messages$Hidden$$Invokers.java")));
+    }
+
+    @Test
+    public void should_not_generate_route_table_if_no_resource_found() throws IOException {
+        compile("com.example.Plain", """
+                package com.example;
+
+                public class Plain {
+                }
+                """);
+
+        assertFalse(Files.exists(output.resolve(RouteTableProcessor.ROUTES)));
+    }
+
+    // 生成的 invoker 实现了 restful-service 里的 GeneratedInvokers，这里只需要一个同名的接口让编译通过
+    private static final String INVOKERS = """
+            package com.kuan.rest;
+
+            public interface GeneratedInvokers {
+                Invoker invoker(String signature);
+
+                interface Invoker {
+                    Object invoke(Object resource, Object[] arguments) throws Throwable;
+                }
+            }
+            """;
+
+    private List<String> compile(String className, String source) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, null,
+                List.of("-proc:only", "-d", output.toString(), "-s", output.toString(),
+                        "-classpath", System.getProperty("java.class.path")),
+                null, List.of(file(className, source), file("com.kuan.rest.GeneratedInvokers", INVOKERS)));
+        task.setProcessors(List.of(new RouteTableProcessor()));
+        assertTrue(task.call());
+
+        Path routes = output.resolve(RouteTableProcessor.ROUTES);
+        return Files.exists(routes) ? Files.readAllLines(routes) : List.of();
+    }
+
+    private static JavaFileObject file(String className, String source) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/')
+                + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+    }
+}
@@ -1,3 +1,4 @@
 rootProject.name = "tdd-restful"
 include("restful-service")
 include("di-container-module")
+include("route-processor")